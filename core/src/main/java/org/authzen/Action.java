@@ -1,8 +1,46 @@
 package org.authzen;
 
-import lombok.Value;
+import lombok.AccessLevel;
+import lombok.EqualsAndHashCode;
+import lombok.Getter;
+import lombok.ToString;
 
-@Value
-public class Action {
-    String name;
+/**
+ * An action name that an application authorizes often, such as the actions of an
+ * {@link ActionVocabulary}. An {@code Action} remembers the {@linkplain SymbolTable symbol} of its name,
+ * looking it up again only once the symbol table has changed, which spares a lookup per request.
+ * Creating an {@code Action} does not intern its name.
+ */
+@Getter
+@EqualsAndHashCode(onlyExplicitlyIncluded = true)
+@ToString(onlyExplicitlyIncluded = true)
+public final class Action {
+    @EqualsAndHashCode.Include
+    @ToString.Include
+    private final String name;
+    /** The symbol table generation in the upper half and the symbol looked up in it in the lower half. */
+    @Getter(AccessLevel.NONE)
+    private volatile long resolved;
+
+    public Action(String name) {
+        this.name = name;
+        this.resolved = resolve();
+    }
+
+    /**
+     * Returns the symbol of the name, or {@link SymbolTable#UNKNOWN} if no compiled policy uses it.
+     */
+    int getSymbol() {
+        long current = resolved;
+        if ((int) (current >>> 32) != SymbolTable.generation()) {
+            current = resolve();
+            resolved = current;
+        }
+        return (int) current;
+    }
+
+    private long resolve() {
+        int generation = SymbolTable.generation();
+        return (long) generation << 32 | SymbolTable.lookup(name) & 0xFFFFFFFFL;
+    }
 }
@@ -0,0 +1,68 @@
+package org.authzen;
+
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A registered, ordered set of action names, such as the actions a UI offers on a resource.
+ * Each action is given a bit so that the actions allowed on a resource fit in an {@link AllowedActions}.
+ */
+public final class ActionVocabulary {
+    public static final int MAX_SIZE = Long.SIZE;
+
+    private final List<String> actions;
+    private final Map<String, Integer> indexes;
+    /** The parsed actions, created once and shared by every request evaluated against the vocabulary. */
+    private final Action[] parsedActions;
+
+    private ActionVocabulary(List<String> actions) {
+        if (actions.size() > MAX_SIZE) {
+            throw new IllegalArgumentException("An action vocabulary cannot hold more than " + MAX_SIZE + " actions");
+        }
+        this.actions = actions;
+        this.indexes = new HashMap<>();
+        this.parsedActions = new Action[actions.size()];
+        for (int i = 0; i < actions.size(); i++) {
+            indexes.put(actions.get(i), i);
+            parsedActions[i] = new Action(actions.get(i));
+        }
+    }
+
+    public static ActionVocabulary of(String... actions) {
+        return of(List.of(actions));
+    }
+
+    public static ActionVocabulary of(List<String> actions) {
+        return new ActionVocabulary(List.copyOf(new LinkedHashSet<>(actions)));
+    }
+
+    public List<String> getActions() {
+        return actions;
+    }
+
+    public int size() {
+        return actions.size();
+    }
+
+    public String get(int index) {
+        return actions.get(index);
+    }
+
+    Action getAction(int index) {
+        return parsedActions[index];
+    }
+
+    /**
+     * Returns the bit index of the action, or {@code -1} if it is not part of the vocabulary.
+     */
+    public int indexOf(String action) {
+        Integer index = indexes.get(action);
+        return index != null ? index : -1;
+    }
+
+    long allBits() {
+        return actions.size() == MAX_SIZE ? -1L : (1L << actions.size()) - 1;
+    }
+}
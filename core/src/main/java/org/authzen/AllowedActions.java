@@ -0,0 +1,45 @@
+package org.authzen;
+
+import lombok.EqualsAndHashCode;
+import lombok.Getter;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The actions of an {@link ActionVocabulary} that are allowed on a resource, stored as a bit set.
+ */
+@Getter
+@EqualsAndHashCode
+public final class AllowedActions {
+    private final ActionVocabulary vocabulary;
+    private final long bits;
+
+    AllowedActions(ActionVocabulary vocabulary, long bits) {
+        this.vocabulary = vocabulary;
+        this.bits = bits;
+    }
+
+    public boolean contains(String action) {
+        int index = vocabulary.indexOf(action);
+        return index >= 0 && (bits & (1L << index)) != 0;
+    }
+
+    public boolean isEmpty() {
+        return bits == 0;
+    }
+
+    public List<String> getActions() {
+        List<String> allowed = new ArrayList<>(Long.bitCount(bits));
+        for (int i = 0; i < vocabulary.size(); i++) {
+            if ((bits & (1L << i)) != 0) {
+                allowed.add(vocabulary.get(i));
+            }
+        }
+        return allowed;
+    }
+
+    @Override
+    public String toString() {
+        return getActions().toString();
+    }
+}
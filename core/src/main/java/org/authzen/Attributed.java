@@ -0,0 +1,12 @@
+package org.authzen;
+
+/**
+ * Implemented by principals, resources and context values that expose attributes to conditions
+ * without reflection, such as to the {@linkplain NativeConditionLanguage native condition language}.
+ */
+public interface Attributed {
+    /**
+     * Returns the value of the attribute, or {@code null} if there is none.
+     */
+    Object getAttribute(String name);
+}
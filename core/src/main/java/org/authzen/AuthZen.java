@@ -1,17 +1,113 @@
 package org.authzen;
 
+import java.util.ArrayList;
+import java.util.List;
+
 /**
  * Core authorization policy engine for AWS-style policy evaluation.
  * This module is authentication-agnostic and focuses solely on policy-based authorization.
  */
 public class AuthZen {
-    private final AuthorizationEngine engine = new AuthorizationEngine();
+    private final AuthorizationEngine engine;
+    private final EvaluationMode mode;
+    /** Optional; {@code null} when decisions are not cached. */
+    private final DecisionCache decisionCache;
+
+    public AuthZen() {
+        this(new AuthorizationEngine(), EvaluationMode.FULL);
+    }
+
+    public AuthZen(EvaluationMode mode) {
+        this(new AuthorizationEngine(), mode);
+    }
+
+    public AuthZen(AuthorizationEngine engine, EvaluationMode mode) {
+        this(engine, mode, null);
+    }
+
+    public AuthZen(AuthorizationEngine engine, EvaluationMode mode, DecisionCache decisionCache) {
+        this.engine = engine;
+        this.mode = mode;
+        this.decisionCache = decisionCache;
+    }
+
+    public DecisionCache getDecisionCache() {
+        return decisionCache;
+    }
 
     public Decision authorize(Principal principal, Resource resource, String action) {
-        return engine.evaluate(principal, resource, action, null);
+        return authorize(principal, resource, action, null);
     }
 
     public Decision authorize(Principal principal, Resource resource, String action, Object context) {
-        return engine.evaluate(principal, resource, action, context);
+        return evaluate(principal, resource, action, context, mode);
+    }
+
+    /**
+     * Authorizes an action created once up front, whose name does not have to be looked up again.
+     */
+    public Decision authorize(Principal principal, Resource resource, Action action, Object context) {
+        return evaluate(principal, resource, action, context, mode);
+    }
+
+    /**
+     * Authorizes one principal against many resources, such as the items of a list page.
+     * The principal's identity policies are prepared once and shared by all resources;
+     * decisions are returned in the order of the resources. Decisions are served from and stored in the
+     * decision cache like those of {@link #authorize}.
+     */
+    public List<Decision> authorizeAll(Principal principal, List<? extends Resource> resources, String action,
+                                       Object context) {
+        if (decisionCache == null) {
+            return engine.evaluateAll(principal, resources, action, context, mode);
+        }
+        PreparedPrincipal prepared = engine.prepare(principal);
+        List<Decision> decisions = new ArrayList<>(resources.size());
+        for (Resource resource : resources) {
+            decisions.add(decisionCache.evaluate(engine, prepared, resource, action, context, mode));
+        }
+        return decisions;
+    }
+
+    /**
+     * Returns which actions of the vocabulary the principal may perform on the resource,
+     * evaluating all of them in a single pass over the statements. The result is neither served from
+     * nor stored in the decision cache: the pass costs about as much as looking up every action.
+     */
+    public AllowedActions allowedActions(Principal principal, Resource resource, ActionVocabulary vocabulary,
+                                         Object context) {
+        return engine.evaluateActions(principal, resource, vocabulary, context);
+    }
+
+    public boolean isAllowed(Principal principal, Resource resource, String action) {
+        return isAllowed(principal, resource, action, null);
+    }
+
+    /**
+     * Returns whether the action is allowed, evaluating in {@link EvaluationMode#DECISION_ONLY} mode
+     * whatever the configured mode.
+     */
+    public boolean isAllowed(Principal principal, Resource resource, String action, Object context) {
+        return evaluate(principal, resource, action, context, EvaluationMode.DECISION_ONLY).isAllowed();
+    }
+
+    public boolean isAllowed(Principal principal, Resource resource, Action action, Object context) {
+        return evaluate(principal, resource, action, context, EvaluationMode.DECISION_ONLY).isAllowed();
+    }
+
+    private Decision evaluate(Principal principal, Resource resource, String action, Object context,
+                              EvaluationMode mode) {
+        if (decisionCache == null) {
+            return engine.evaluate(principal, resource, action, context, mode);
+        }
+        return decisionCache.evaluate(engine, principal, resource, action, context, mode);
+    }
+
+    private Decision evaluate(Principal principal, Resource resource, Action action, Object context,
+                              EvaluationMode mode) {
+        if (decisionCache == null) {
+            return engine.evaluate(principal, resource, action, context, mode);
+        }
+        return decisionCache.evaluate(engine, principal, resource, action.getName(), context, mode);
     }
 }
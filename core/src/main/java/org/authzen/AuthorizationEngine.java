@@ -1,28 +1,184 @@
 package org.authzen;
 
 import java.util.*;
-import java.util.stream.Collectors;
 
 public class AuthorizationEngine {
-    private final PatternMatcher patternMatcher = new PatternMatcher();
-    private final ConditionEvaluator conditionEvaluator = new ConditionEvaluator();
+    private final PolicyCompiler policyCompiler;
+    private final ConditionEvaluator conditionEvaluator;
+    private final EffectivePolicyCache effectivePolicyCache;
+    private final ConditionResultCache conditionResultCache;
+    private final ParallelEvaluation parallelEvaluation;
+
+    public AuthorizationEngine() {
+        this(PolicyCompiler.getDefault());
+    }
+
+    public AuthorizationEngine(PolicyCompiler policyCompiler) {
+        this(policyCompiler, new EffectivePolicyCache(policyCompiler));
+    }
+
+    public AuthorizationEngine(PolicyCompiler policyCompiler, EffectivePolicyCache effectivePolicyCache) {
+        this(policyCompiler, effectivePolicyCache, new ConditionResultCache());
+    }
+
+    public AuthorizationEngine(PolicyCompiler policyCompiler, EffectivePolicyCache effectivePolicyCache,
+                               ConditionResultCache conditionResultCache) {
+        this(policyCompiler, effectivePolicyCache, conditionResultCache, null);
+    }
+
+    /**
+     * Creates an engine that evaluates large candidate statement lists in parallel, or sequentially
+     * if {@code parallelEvaluation} is {@code null}.
+     */
+    public AuthorizationEngine(PolicyCompiler policyCompiler, EffectivePolicyCache effectivePolicyCache,
+                               ConditionResultCache conditionResultCache, ParallelEvaluation parallelEvaluation) {
+        this.policyCompiler = policyCompiler;
+        this.conditionEvaluator = policyCompiler.getConditionEvaluator();
+        this.effectivePolicyCache = effectivePolicyCache;
+        this.conditionResultCache = conditionResultCache;
+        this.parallelEvaluation = parallelEvaluation;
+    }
+
+    public EffectivePolicyCache getEffectivePolicyCache() {
+        return effectivePolicyCache;
+    }
+
+    public ConditionResultCache getConditionResultCache() {
+        return conditionResultCache;
+    }
 
     public Decision evaluate(Principal principal, Resource resource, String action, Object context) {
-        String fullAction = resource.getType() + ":" + action;
+        return evaluate(principal, resource, action, context, EvaluationMode.FULL);
+    }
+
+    public Decision evaluate(Principal principal, Resource resource, String action, Object context,
+                             EvaluationMode mode) {
+        return evaluate(new EvaluationContext(principal, resource, action, context), mode);
+    }
+
+    public Decision evaluate(Principal principal, Resource resource, Action action, Object context,
+                             EvaluationMode mode) {
+        return evaluate(new EvaluationContext(principal, resource, action, context), mode);
+    }
+
+    /**
+     * Looks up the principal's effective policy and identity once, so that the result can be
+     * evaluated against many resources.
+     */
+    public PreparedPrincipal prepare(Principal principal) {
+        return new PreparedPrincipal(principal, effectivePolicyCache.get(principal));
+    }
+
+    public Decision evaluate(PreparedPrincipal principal, Resource resource, String action, Object context,
+                             EvaluationMode mode) {
+        return evaluate(new EvaluationContext(principal, resource, action, context), mode);
+    }
+
+    /**
+     * Evaluates one principal against many resources, preparing the identity side only once.
+     * Decisions are returned in the order of the resources.
+     */
+    public List<Decision> evaluateAll(Principal principal, List<? extends Resource> resources, String action,
+                                      Object context, EvaluationMode mode) {
+        PreparedPrincipal prepared = prepare(principal);
+        List<Decision> decisions = new ArrayList<>(resources.size());
+        for (Resource resource : resources) {
+            decisions.add(evaluate(prepared, resource, action, context, mode));
+        }
+        return decisions;
+    }
+
+    /**
+     * Evaluates every action of the vocabulary for one principal and resource in a single pass over
+     * the deny statements and one over the allow statements, and returns the allowed actions.
+     * Each action is allowed exactly when {@link #evaluate} would allow it.
+     */
+    public AllowedActions evaluateActions(Principal principal, Resource resource, ActionVocabulary vocabulary,
+                                          Object context) {
+        PreparedPrincipal prepared = prepare(principal);
+        EvaluationContext[] requests = new EvaluationContext[vocabulary.size()];
+        for (int i = 0; i < requests.length; i++) {
+            requests[i] = new EvaluationContext(prepared, resource, vocabulary.getAction(i), context);
+        }
+
+        List<CompiledStatement> identityStatements = prepared.getEffectivePolicy().getStatements();
+        List<CompiledStatement> resourceStatements = policyCompiler.compile(resource.getPolicy()).getStatements();
+
+        long all = vocabulary.allBits();
+        long denied = matchActions(identityStatements, Effect.DENY, requests, all, true)
+                | matchActions(resourceStatements, Effect.DENY, requests, all, false);
+        long identityAllowed = matchActions(identityStatements, Effect.ALLOW, requests, all & ~denied, true);
+        long allowed = matchActions(resourceStatements, Effect.ALLOW, requests, identityAllowed, false);
+        return new AllowedActions(vocabulary, allowed);
+    }
+
+    /**
+     * Returns the bits of the candidate actions matched by at least one statement with the given effect.
+     * Resource and principal patterns are checked once per statement; action patterns once per action
+     * still open, and conditions too unless they do not read the action.
+     */
+    private long matchActions(List<CompiledStatement> statements, Effect effect, EvaluationContext[] requests,
+                              long candidates, boolean isIdentityPolicy) {
+        long matched = 0;
+        for (CompiledStatement statement : statements) {
+            long open = candidates & ~matched;
+            if (open == 0) {
+                break;
+            }
+            if (statement.getEffect() != effect) {
+                continue;
+            }
+            long actionBits = 0;
+            for (long bits = open; bits != 0; bits &= bits - 1) {
+                int index = Long.numberOfTrailingZeros(bits);
+                if (requests[index].matchesAction(statement)) {
+                    actionBits |= 1L << index;
+                }
+            }
+            if (actionBits == 0 ||
+                !statement.matchesResource(requests[0].getResource().getId()) ||
+                !statement.appliesTo(requests[0].getIdentity(), isIdentityPolicy)) {
+                continue;
+            }
+            ConditionDependencies dependencies = statement.getCondition().getDependencies();
+            if (!dependencies.readsAction() && dependencies.isDeterministic()) {
+                // the condition gives the same result for every action, so evaluate it once
+                if (evaluateCondition(statement, requests[Long.numberOfTrailingZeros(actionBits)])) {
+                    matched |= actionBits;
+                }
+                continue;
+            }
+            for (long bits = actionBits; bits != 0; bits &= bits - 1) {
+                int index = Long.numberOfTrailingZeros(bits);
+                if (evaluateCondition(statement, requests[index])) {
+                    matched |= 1L << index;
+                }
+            }
+        }
+        return matched;
+    }
+
+    Decision evaluate(EvaluationContext request, EvaluationMode mode) {
+        if (mode == EvaluationMode.DIAGRAM) {
+            return evaluateDiagram(request);
+        }
+        if (mode != EvaluationMode.FULL) {
+            return evaluateShortCircuit(request, mode == EvaluationMode.SHORT_CIRCUIT);
+        }
         
-        List<Statement> identityStatements = collectIdentityStatements(principal);
-        List<Statement> resourceStatements = collectResourceStatements(resource);
+        List<CompiledStatement> identityStatements = new ArrayList<>();
+        collectIdentityStatements(request, identityStatements, identityStatements);
+        List<CompiledStatement> resourceStatements = new ArrayList<>();
+        collectResourceStatements(request, resourceStatements, resourceStatements);
         
-        List<Statement> matchedIdentityStatements = evaluateStatements(identityStatements, fullAction, resource.getId(), 
-                principal, resource, action, context, true);
-        List<Statement> matchedResourceStatements = evaluateStatements(resourceStatements, fullAction, resource.getId(), 
-                principal, resource, action, context, false);
+        List<Statement> matchedIdentityStatements = evaluateStatements(identityStatements, request, true);
+        List<Statement> matchedResourceStatements = evaluateStatements(resourceStatements, request, false);
         
         boolean identityDeny = matchedIdentityStatements.stream().anyMatch(s -> s.getEffect() == Effect.DENY);
         boolean resourceDeny = matchedResourceStatements.stream().anyMatch(s -> s.getEffect() == Effect.DENY);
         
         if (identityDeny || resourceDeny) {
-            return new Decision(false, "Explicit deny", 
+            return new Decision(false, Decision.EXPLICIT_DENY.getReason(), 
                 mergeStatements(matchedIdentityStatements, matchedResourceStatements));
         }
         
@@ -30,106 +186,172 @@ public class AuthorizationEngine {
         boolean resourceAllow = matchedResourceStatements.stream().anyMatch(s -> s.getEffect() == Effect.ALLOW);
         
         if (identityAllow && resourceAllow) {
-            return new Decision(true, "Both identity and resource policies allow", 
+            return new Decision(true, Decision.ALLOWED.getReason(), 
                 mergeStatements(matchedIdentityStatements, matchedResourceStatements));
         }
         
-        return new Decision(false, "No matching allow policies from both identity and resource", 
+        return new Decision(false, Decision.NO_MATCHING_ALLOW.getReason(), 
             mergeStatements(matchedIdentityStatements, matchedResourceStatements));
     }
 
-    private List<Statement> collectIdentityStatements(Principal principal) {
-        List<Statement> statements = new ArrayList<>();
-        if (principal.getPolicy() != null) {
-            statements.addAll(principal.getPolicy().getStatements());
+    private Decision evaluateDiagram(EvaluationContext request) {
+        CompiledPolicy identityPolicy = request.getPrepared() != null
+                ? request.getPrepared().getEffectivePolicy().getPolicy()
+                : effectivePolicyCache.get(request.getPrincipal()).getPolicy();
+        DecisionDiagram identityDiagram = identityPolicy.getDiagram(true);
+        DecisionDiagram resourceDiagram = policyCompiler.compile(request.getResource().getPolicy()).getDiagram(false);
+        if (identityDiagram == DecisionDiagram.TOO_LARGE || resourceDiagram == DecisionDiagram.TOO_LARGE) {
+            return evaluateShortCircuit(request, false);
         }
-        for (Role role : principal.getRoles()) {
-            if (role.getPolicy() != null) {
-                statements.addAll(role.getPolicy().getStatements());
-            }
+        Decision identity = identityDiagram.evaluate(request, this::evaluateCondition);
+        if (identity == Decision.EXPLICIT_DENY) {
+            return identity;
         }
-        return statements;
-    }
-
-    private List<Statement> collectResourceStatements(Resource resource) {
-        if (resource.getPolicy() != null) {
-            return new ArrayList<>(resource.getPolicy().getStatements());
+        Decision resource = resourceDiagram.evaluate(request, this::evaluateCondition);
+        if (resource == Decision.EXPLICIT_DENY || identity == Decision.ALLOWED && resource == Decision.ALLOWED) {
+            return resource;
         }
-        return new ArrayList<>();
+        return Decision.NO_MATCHING_ALLOW;
     }
 
-    private List<Statement> evaluateStatements(List<Statement> statements, String action, String resourceId, 
-                                               Principal principal, Resource resource, String actionName, 
-                                               Object context, boolean isIdentityPolicy) {
-        List<Statement> matched = new ArrayList<>();
-        
-        for (Statement statement : statements) {
-            if (matchesAction(statement, action) && 
-                matchesResource(statement, resourceId) &&
-                matchesPrincipalContext(statement, principal, isIdentityPolicy)) {
-                
-                Map<String, Object> evalContext = buildContext(principal, resource, actionName, context);
-                if (conditionEvaluator.evaluate(statement.getCondition(), evalContext)) {
-                    matched.add(statement);
-                }
+    private Decision evaluateShortCircuit(EvaluationContext request, boolean explain) {
+        List<CompiledStatement> identityDenies = new ArrayList<>();
+        List<CompiledStatement> identityAllows = new ArrayList<>();
+        collectIdentityStatements(request, identityDenies, identityAllows);
+        List<CompiledStatement> resourceDenies = new ArrayList<>();
+        List<CompiledStatement> resourceAllows = new ArrayList<>();
+        collectResourceStatements(request, resourceDenies, resourceAllows);
+
+        for (int pass = 0; pass < 2; pass++) {
+            boolean conditional = pass == 1;
+            CompiledStatement deny = firstMatching(identityDenies, conditional, request, true, explain);
+            if (deny == null) {
+                deny = firstMatching(resourceDenies, conditional, request, false, explain);
+            }
+            if (deny != null) {
+                return explain
+                        ? new Decision(false, Decision.EXPLICIT_DENY.getReason(), List.of(deny.getStatement()))
+                        : Decision.EXPLICIT_DENY;
             }
         }
-        
-        return matched;
-    }
 
-    private boolean matchesAction(Statement statement, String action) {
-        if (statement.getActions().isEmpty()) {
-            return false;
+        CompiledStatement identityAllow = firstAllow(identityAllows, request, true, explain);
+        if (identityAllow == null) {
+            return Decision.NO_MATCHING_ALLOW;
         }
-        return statement.getActions().stream().anyMatch(pattern -> patternMatcher.matches(pattern, action));
+        CompiledStatement resourceAllow = firstAllow(resourceAllows, request, false, explain);
+        if (resourceAllow == null) {
+            return Decision.NO_MATCHING_ALLOW;
+        }
+        return explain
+                ? new Decision(true, Decision.ALLOWED.getReason(),
+                        List.of(identityAllow.getStatement(), resourceAllow.getStatement()))
+                : Decision.ALLOWED;
     }
 
-    private boolean matchesResource(Statement statement, String resourceId) {
-        if (statement.getResources().isEmpty()) {
-            return false;
+    private CompiledStatement firstAllow(List<CompiledStatement> statements, EvaluationContext request,
+                                         boolean isIdentityPolicy, boolean explain) {
+        CompiledStatement allow = firstMatching(statements, false, request, isIdentityPolicy, explain);
+        if (allow == null) {
+            allow = firstMatching(statements, true, request, isIdentityPolicy, explain);
         }
-        return statement.getResources().stream().anyMatch(pattern -> patternMatcher.matches(pattern, resourceId));
+        return allow;
     }
 
-    private boolean matchesPrincipalContext(Statement statement, Principal principal, boolean isIdentityPolicy) {
-        if (statement.getPrincipals().isEmpty()) {
-            return !isIdentityPolicy;
+    /**
+     * Returns the first statement that matches the request, only looking at statements with a
+     * condition if {@code conditional} is set and statements without one otherwise.
+     * Conditions are evaluated only once every pattern of the statement matched. Unless the decision
+     * is explained, parallel evaluation may return any matching statement instead.
+     */
+    private CompiledStatement firstMatching(List<CompiledStatement> statements, boolean conditional,
+                                            EvaluationContext request, boolean isIdentityPolicy,
+                                            boolean explain) {
+        if (parallelEvaluation != null && parallelEvaluation.appliesTo(statements)) {
+            int first = parallelEvaluation.firstMatch(statements, request, !explain, (statement, worker) ->
+                    statement.getCondition().isEmpty() != conditional &&
+                    matchesPatterns(statement, worker, isIdentityPolicy) &&
+                    (!conditional || evaluateCondition(statement, worker)));
+            return first >= 0 ? statements.get(first) : null;
         }
+        for (CompiledStatement statement : statements) {
+            if (statement.getCondition().isEmpty() == conditional) {
+                continue;
+            }
+            if (matchesPatterns(statement, request, isIdentityPolicy) &&
+                (!conditional || evaluateCondition(statement, request))) {
+                return statement;
+            }
+        }
+        return null;
+    }
 
-        List<String> principalIds = new ArrayList<>();
-        principalIds.add(principal.getId());
-        principal.getRoles().forEach(role -> principalIds.add(role.getId()));
-
-        boolean matchesPrincipal = principalIds.stream()
-                .anyMatch(id -> statement.getPrincipals().stream()
-                        .anyMatch(pattern -> patternMatcher.matches(pattern, id)));
+    /**
+     * Adds the candidate identity statements to {@code denies} or {@code allows} by effect; see
+     * {@link CompiledPolicy#collectCandidates(int, int, boolean, String, PrincipalIdentity, boolean, List, List)}.
+     */
+    private void collectIdentityStatements(EvaluationContext request, List<CompiledStatement> denies,
+                                           List<CompiledStatement> allows) {
+        if (request.getPrepared() != null) {
+            for (CompiledStatement statement : request.getPrepared()
+                    .getApplicableStatements(request.getResource().getType(), request.getAction())) {
+                (statement.getEffect() == Effect.DENY ? denies : allows).add(statement);
+            }
+            return;
+        }
+        effectivePolicyCache.get(request.getPrincipal()).getPolicy()
+                .collectCandidates(request.getTypeSymbol(), request.getActionSymbol(), request.isActionSplittable(),
+                        request.getResource().getId(), request.getIdentity(), true, denies, allows);
+    }
 
-        if (!matchesPrincipal) {
-            return false;
+    private void collectResourceStatements(EvaluationContext request, List<CompiledStatement> denies,
+                                           List<CompiledStatement> allows) {
+        Resource resource = request.getResource();
+        if (resource.getPolicy() != null) {
+            policyCompiler.compile(resource.getPolicy())
+                    .collectCandidates(request.getTypeSymbol(), request.getActionSymbol(), request.isActionSplittable(),
+                            resource.getId(), request.getIdentity(), false, denies, allows);
         }
+    }
 
-        if (!statement.getNotPrincipals().isEmpty()) {
-            boolean matchesNotPrincipal = principalIds.stream()
-                    .anyMatch(id -> statement.getNotPrincipals().stream()
-                            .anyMatch(pattern -> patternMatcher.matches(pattern, id)));
-            if (matchesNotPrincipal) {
-                return false;
+    private List<Statement> evaluateStatements(List<CompiledStatement> statements, EvaluationContext request,
+                                               boolean isIdentityPolicy) {
+        List<Statement> matched = new ArrayList<>();
+        if (parallelEvaluation != null && parallelEvaluation.appliesTo(statements)) {
+            for (CompiledStatement statement : parallelEvaluation.allMatches(statements, request, (candidate, worker) ->
+                    matchesPatterns(candidate, worker, isIdentityPolicy) && evaluateCondition(candidate, worker))) {
+                matched.add(statement.getStatement());
+            }
+            return matched;
+        }
+        
+        for (CompiledStatement statement : statements) {
+            if (matchesPatterns(statement, request, isIdentityPolicy) && evaluateCondition(statement, request)) {
+                matched.add(statement.getStatement());
             }
         }
+        
+        return matched;
+    }
 
-        return true;
+    private boolean matchesPatterns(CompiledStatement statement, EvaluationContext request, boolean isIdentityPolicy) {
+        if (isIdentityPolicy && request.getPrepared() != null) {
+            // action and principal patterns were already matched when the principal was prepared
+            return statement.matchesResource(request.getResource().getId());
+        }
+        return request.matchesAction(statement) &&
+               statement.matchesResource(request.getResource().getId()) &&
+               statement.appliesTo(request.getIdentity(), isIdentityPolicy);
     }
 
-    private Map<String, Object> buildContext(Principal principal, Resource resource, String action, Object context) {
-        Map<String, Object> evalContext = new HashMap<>();
-        evalContext.put("principal", principal);
-        evalContext.put("resource", resource);
-        evalContext.put("action", action);
-        if (context != null) {
-            evalContext.put("context", context);
+    private boolean evaluateCondition(CompiledStatement statement, EvaluationContext request) {
+        if (statement.getCondition().isEmpty()) {
+            return true;
         }
-        return evalContext;
+        request.recordDependencies(statement.getCondition().getDependencies());
+        boolean result = conditionResultCache.evaluate(statement.getCondition(), request, conditionEvaluator);
+        request.clearAssignments();
+        return result;
     }
 
     private List<Statement> mergeStatements(List<Statement> list1, List<Statement> list2) {
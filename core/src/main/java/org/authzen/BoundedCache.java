@@ -0,0 +1,169 @@
+package org.authzen;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.BiConsumer;
+import java.util.function.BiPredicate;
+import java.util.function.Function;
+import java.util.function.Predicate;
+
+/**
+ * Thread-safe cache holding at most {@code maximumSize} entries. Once the bound is
+ * exceeded the oldest entries are evicted in insertion order. Reads are lock-free; writes link
+ * and unlink entries of a doubly linked insertion list in constant time under a lock, so the map
+ * and the list never disagree.
+ */
+class BoundedCache<K, V> {
+    private final int maximumSize;
+    private final ConcurrentHashMap<K, Node<K, V>> entries = new ConcurrentHashMap<>();
+    /** Sentinel of the circular insertion list; its successor is the eldest entry. Guards the list. */
+    private final Node<K, V> head = new Node<>(null, null);
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+
+    BoundedCache(int maximumSize) {
+        if (maximumSize < 0) {
+            throw new IllegalArgumentException("Maximum cache size cannot be negative");
+        }
+        this.maximumSize = maximumSize;
+        head.previous = head;
+        head.next = head;
+    }
+
+    V get(K key, Function<? super K, ? extends V> loader) {
+        Node<K, V> node = entries.get(key);
+        if (node != null) {
+            hits.increment();
+            return node.value;
+        }
+        misses.increment();
+        V value = loader.apply(key);
+        if (maximumSize == 0) {
+            return value;
+        }
+        synchronized (head) {
+            Node<K, V> existing = entries.get(key);
+            if (existing != null) {
+                return existing.value;
+            }
+            insert(key, value);
+        }
+        return value;
+    }
+
+    /**
+     * Returns the cached value, or {@code null} if there is none; counted as a hit or a miss.
+     */
+    V getIfPresent(K key) {
+        Node<K, V> node = entries.get(key);
+        (node != null ? hits : misses).increment();
+        return node != null ? node.value : null;
+    }
+
+    /**
+     * Returns the cached value if it is still valid. An invalid value is removed and counted as a miss.
+     */
+    V getIfPresent(K key, Predicate<? super V> isValid) {
+        Node<K, V> node = entries.get(key);
+        V value = node != null ? node.value : null;
+        if (value != null && !isValid.test(value)) {
+            synchronized (head) {
+                if (node.value == value && entries.remove(key, node)) {
+                    unlink(node);
+                }
+            }
+            value = null;
+        }
+        (value != null ? hits : misses).increment();
+        return value;
+    }
+
+    void put(K key, V value) {
+        if (maximumSize == 0) {
+            return;
+        }
+        synchronized (head) {
+            Node<K, V> existing = entries.get(key);
+            if (existing != null) {
+                existing.value = value;
+            } else {
+                insert(key, value);
+            }
+        }
+    }
+
+    void remove(K key) {
+        synchronized (head) {
+            Node<K, V> node = entries.remove(key);
+            if (node != null) {
+                unlink(node);
+            }
+        }
+    }
+
+    void removeIf(BiPredicate<? super K, ? super V> predicate) {
+        entries.forEach((key, node) -> {
+            if (predicate.test(key, node.value)) {
+                synchronized (head) {
+                    if (entries.remove(key, node)) {
+                        unlink(node);
+                    }
+                }
+            }
+        });
+    }
+
+    void forEach(BiConsumer<? super K, ? super V> action) {
+        entries.forEach((key, node) -> action.accept(key, node.value));
+    }
+
+    int size() {
+        return entries.size();
+    }
+
+    CacheStats stats() {
+        return new CacheStats(hits.sum(), misses.sum(), evictions.sum(), entries.size());
+    }
+
+    void clear() {
+        synchronized (head) {
+            entries.clear();
+            head.previous = head;
+            head.next = head;
+        }
+    }
+
+    /** Adds an entry for an absent key as the newest one and evicts the eldest beyond the bound. */
+    private void insert(K key, V value) {
+        Node<K, V> node = new Node<>(key, value);
+        entries.put(key, node);
+        node.previous = head.previous;
+        node.next = head;
+        head.previous.next = node;
+        head.previous = node;
+        while (entries.size() > maximumSize) {
+            Node<K, V> eldest = head.next;
+            entries.remove(eldest.key, eldest);
+            unlink(eldest);
+            evictions.increment();
+        }
+    }
+
+    private void unlink(Node<K, V> node) {
+        node.previous.next = node.next;
+        node.next.previous = node.previous;
+    }
+
+    private static final class Node<K, V> {
+        private final K key;
+        private volatile V value;
+        private Node<K, V> previous;
+        private Node<K, V> next;
+
+        private Node(K key, V value) {
+            this.key = key;
+            this.value = value;
+        }
+    }
+}
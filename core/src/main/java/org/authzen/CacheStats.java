@@ -0,0 +1,14 @@
+package org.authzen;
+
+import lombok.Value;
+
+/**
+ * Point-in-time counters of a cache owned by the engine.
+ */
+@Value
+public class CacheStats {
+    long hitCount;
+    long missCount;
+    long evictionCount;
+    int size;
+}
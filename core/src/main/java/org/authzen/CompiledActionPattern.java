@@ -0,0 +1,141 @@
+package org.authzen;
+
+import lombok.EqualsAndHashCode;
+import lombok.Getter;
+
+/**
+ * An action pattern, which statements match against {@code type:action}, compiled so that the
+ * resource type and the action are matched separately, without building the {@code type:action} value.
+ * A pattern with a single {@code :} outside any escape, bracket expression or group is split into a
+ * type and an action component. {@code *} and {@code **} match every value. Any other pattern is
+ * matched against the joined value, and so is a type or action that contains {@code :}, {@code /} or
+ * a line terminator, since a wildcard could then span the separator. Literal components are
+ * {@linkplain SymbolTable interned} and matched by symbol.
+ */
+@Getter
+@EqualsAndHashCode(onlyExplicitlyIncluded = true)
+public final class CompiledActionPattern {
+    private static final String UNSPLITTABLE_CHARS = "\\[{";
+
+    public enum Form {
+        SPLIT,
+        MATCH_ALL,
+        JOINED
+    }
+
+    /** The whole pattern, matched against {@code type:action}. */
+    @EqualsAndHashCode.Include
+    private final CompiledPattern pattern;
+    private final Form form;
+    /** The type component of a {@link Form#SPLIT} pattern, otherwise {@code null}. */
+    private final CompiledPattern typePattern;
+    /** The action component of a {@link Form#SPLIT} pattern, otherwise {@code null}. */
+    private final CompiledPattern actionPattern;
+    /** The symbol of a literal type component, otherwise {@link SymbolTable#UNKNOWN}. */
+    @Getter(lombok.AccessLevel.PACKAGE)
+    private final int typeSymbol;
+    /** The symbol of a literal action component, otherwise {@link SymbolTable#UNKNOWN}. */
+    @Getter(lombok.AccessLevel.PACKAGE)
+    private final int actionSymbol;
+    /** Keeps the symbols of the literal components interned while the pattern is in use. */
+    @Getter(lombok.AccessLevel.NONE)
+    private final SymbolTable.Symbol[] literals;
+
+    private CompiledActionPattern(CompiledPattern pattern, Form form, CompiledPattern typePattern,
+                                  CompiledPattern actionPattern) {
+        this.pattern = pattern;
+        this.form = form;
+        this.typePattern = typePattern;
+        this.actionPattern = actionPattern;
+        this.literals = new SymbolTable.Symbol[] {symbolOf(typePattern), symbolOf(actionPattern)};
+        this.typeSymbol = literals[0] != null ? literals[0].getId() : SymbolTable.UNKNOWN;
+        this.actionSymbol = literals[1] != null ? literals[1].getId() : SymbolTable.UNKNOWN;
+    }
+
+    private static SymbolTable.Symbol symbolOf(CompiledPattern component) {
+        return component != null && component.getKind() == CompiledPattern.Kind.EXACT
+                ? SymbolTable.intern(component.getLiteral())
+                : null;
+    }
+
+    public static CompiledActionPattern compile(String pattern) {
+        return compile(CompiledPattern.compile(pattern), new PatternMatcher(0));
+    }
+
+    static CompiledActionPattern compile(CompiledPattern pattern, PatternMatcher matcher) {
+        if (pattern.getKind() == CompiledPattern.Kind.MATCH_ALL) {
+            return new CompiledActionPattern(pattern, Form.MATCH_ALL, null, null);
+        }
+        String source = pattern.getPattern();
+        int separator = source.indexOf(':');
+        if (separator < 0 || source.indexOf(':', separator + 1) >= 0 || containsUnsplittable(source)) {
+            return new CompiledActionPattern(pattern, Form.JOINED, null, null);
+        }
+        return new CompiledActionPattern(pattern, Form.SPLIT, matcher.compile(source.substring(0, separator)),
+                matcher.compile(source.substring(separator + 1)));
+    }
+
+    /**
+     * Returns whether matching the type and the action separately gives the same result as matching
+     * {@code type:action}.
+     */
+    public static boolean isSplittable(String type, String action) {
+        return isSplittable(type) && isSplittable(action);
+    }
+
+    private static boolean isSplittable(String value) {
+        if (value == null) {
+            return false;
+        }
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == ':' || c == '/' ||
+                c == '\n' || c == '\r' || c == '\u0085' || c == '\u2028' || c == '\u2029') {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean containsUnsplittable(String pattern) {
+        for (int i = 0; i < pattern.length(); i++) {
+            if (UNSPLITTABLE_CHARS.indexOf(pattern.charAt(i)) != -1) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    public boolean matches(String type, String action) {
+        return matches(type, SymbolTable.lookup(type), action, SymbolTable.lookup(action),
+                isSplittable(type, action));
+    }
+
+    /**
+     * Matches the type and action, given their current symbols and what
+     * {@link #isSplittable(String, String)} returns for them.
+     */
+    boolean matches(String type, int typeSymbol, String action, int actionSymbol, boolean splittable) {
+        if (!splittable) {
+            return pattern.matches(type + ":" + action);
+        }
+        switch (form) {
+            case SPLIT:
+                return matches(typePattern, this.typeSymbol, type, typeSymbol) &&
+                       matches(actionPattern, this.actionSymbol, action, actionSymbol);
+            case MATCH_ALL:
+                return true;
+            default:
+                return pattern.matches(type + ":" + action);
+        }
+    }
+
+    private static boolean matches(CompiledPattern component, int literalSymbol, String value, int valueSymbol) {
+        return literalSymbol != SymbolTable.UNKNOWN ? valueSymbol == literalSymbol : component.matches(value);
+    }
+
+    @Override
+    public String toString() {
+        return pattern.toString();
+    }
+}
@@ -0,0 +1,75 @@
+package org.authzen;
+
+import lombok.AccessLevel;
+import lombok.Getter;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A statement condition parsed once by its {@link ConditionLanguage}, with the dependencies it reads.
+ * A condition that failed to parse is kept as an invalid instance so that it evaluates to
+ * {@code false} without being parsed again. Each condition counts the evaluations that ended in
+ * {@link ConditionResult#ERROR}.
+ */
+@Getter
+public final class CompiledCondition {
+    /** The condition of a statement without condition; it always evaluates to {@code true}. */
+    public static final CompiledCondition NONE =
+            new CompiledCondition(null, JexlConditionLanguage.NAME, null, ConditionDependencies.NONE, null);
+
+    private final String source;
+    private final String language;
+    @Getter(AccessLevel.PACKAGE)
+    private final ConditionLanguage.Condition condition;
+    private final ConditionDependencies dependencies;
+    private final Exception error;
+    @Getter(AccessLevel.NONE)
+    private final LongAdder errors = new LongAdder();
+
+    CompiledCondition(String source, String language, ConditionLanguage.Condition condition,
+                      ConditionDependencies dependencies, Exception error) {
+        this.source = source;
+        this.language = language;
+        this.condition = condition;
+        this.dependencies = dependencies;
+        this.error = error;
+    }
+
+    public boolean isEmpty() {
+        return this == NONE;
+    }
+
+    public boolean isValid() {
+        return error == null;
+    }
+
+    /**
+     * Returns how many evaluations of the condition ended in {@link ConditionResult#ERROR}.
+     */
+    public long getErrorCount() {
+        return errors.sum();
+    }
+
+    void recordError() {
+        errors.increment();
+    }
+
+    /**
+     * Returns whether the condition is evaluated without the JEXL interpreter.
+     */
+    public boolean isCompiled() {
+        if (condition instanceof JexlConditionLanguage.JexlCondition jexl) {
+            return jexl.isCompiled();
+        }
+        return condition != null;
+    }
+
+    /** The language name used in messages. */
+    String describeLanguage() {
+        return JexlConditionLanguage.NAME.equals(language) ? "JEXL" : language;
+    }
+
+    @Override
+    public String toString() {
+        return source != null ? source : "";
+    }
+}
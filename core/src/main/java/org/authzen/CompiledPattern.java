@@ -0,0 +1,323 @@
+package org.authzen;
+
+import lombok.EqualsAndHashCode;
+import lombok.Getter;
+import java.util.regex.Pattern;
+import java.util.regex.PatternSyntaxException;
+
+/**
+ * A glob pattern compiled once into a reusable matcher.
+ * Matching follows the semantics of the default file system's {@code glob:} path matcher,
+ * including its path normalization, but works directly on the string without allocating a path.
+ * Literal patterns and patterns with a single leading and/or trailing wildcard are classified
+ * into a {@link Kind} that is matched with plain string comparisons; everything else falls back
+ * to a regular expression.
+ */
+@Getter
+@EqualsAndHashCode(onlyExplicitlyIncluded = true)
+public final class CompiledPattern {
+    private static final String REGEX_META_CHARS = ".^$+{[]|()";
+    private static final String GLOB_META_CHARS = "\\*?[{";
+
+    public enum Kind {
+        EXACT,
+        PREFIX,
+        SUFFIX,
+        CONTAINS,
+        MATCH_ALL,
+        GLOB
+    }
+
+    @EqualsAndHashCode.Include
+    private final String pattern;
+    private final Kind kind;
+    /** The literal part of the pattern, or {@code null} for {@link Kind#MATCH_ALL} and {@link Kind#GLOB}. */
+    private final String literal;
+    /** The literal text every matching value starts with; empty if the pattern starts with a wildcard. */
+    private final String literalPrefix;
+    @Getter(lombok.AccessLevel.NONE)
+    private final boolean leadingCrossesSegments;
+    @Getter(lombok.AccessLevel.NONE)
+    private final boolean trailingCrossesSegments;
+    @Getter(lombok.AccessLevel.NONE)
+    private final Pattern regex;
+
+    private CompiledPattern(String pattern, Kind kind, String literal, boolean leadingCrossesSegments,
+                            boolean trailingCrossesSegments, Pattern regex) {
+        this.pattern = pattern;
+        this.kind = kind;
+        this.literal = literal;
+        this.literalPrefix = literalPrefix(pattern, kind, literal);
+        this.leadingCrossesSegments = leadingCrossesSegments;
+        this.trailingCrossesSegments = trailingCrossesSegments;
+        this.regex = regex;
+    }
+
+    public static CompiledPattern compile(String pattern) {
+        int length = pattern.length();
+        int leading = 0;
+        while (leading < length && pattern.charAt(leading) == '*') {
+            leading++;
+        }
+        if (leading == length) {
+            if (length == 0) {
+                return new CompiledPattern(pattern, Kind.EXACT, pattern, false, false, null);
+            }
+            if (length <= 2) {
+                return new CompiledPattern(pattern, Kind.MATCH_ALL, null, length == 2, length == 2, null);
+            }
+            return glob(pattern);
+        }
+        int trailing = 0;
+        while (pattern.charAt(length - 1 - trailing) == '*') {
+            trailing++;
+        }
+        String literal = pattern.substring(leading, length - trailing);
+        if (leading > 2 || trailing > 2 || containsGlobMeta(literal)) {
+            return glob(pattern);
+        }
+
+        Kind kind;
+        if (leading == 0) {
+            kind = trailing == 0 ? Kind.EXACT : Kind.PREFIX;
+        } else {
+            kind = trailing == 0 ? Kind.SUFFIX : Kind.CONTAINS;
+        }
+        return new CompiledPattern(pattern, kind, literal, leading == 2, trailing == 2, null);
+    }
+
+    public boolean matches(String value) {
+        String normalized = normalize(value);
+        int length = normalized.length();
+        switch (kind) {
+            case EXACT:
+                return normalized.equals(literal);
+            case PREFIX:
+                return normalized.startsWith(literal)
+                        && isWildcardSpan(normalized, literal.length(), length, trailingCrossesSegments);
+            case SUFFIX:
+                return normalized.endsWith(literal)
+                        && isWildcardSpan(normalized, 0, length - literal.length(), leadingCrossesSegments);
+            case CONTAINS:
+                for (int i = normalized.indexOf(literal); i >= 0; i = normalized.indexOf(literal, i + 1)) {
+                    if (isWildcardSpan(normalized, 0, i, leadingCrossesSegments)
+                            && isWildcardSpan(normalized, i + literal.length(), length, trailingCrossesSegments)) {
+                        return true;
+                    }
+                }
+                return false;
+            case MATCH_ALL:
+                return isWildcardSpan(normalized, 0, length, trailingCrossesSegments);
+            default:
+                return regex.matcher(normalized).matches();
+        }
+    }
+
+    @Override
+    public String toString() {
+        return pattern;
+    }
+
+    private static CompiledPattern glob(String pattern) {
+        return new CompiledPattern(pattern, Kind.GLOB, null, false, false, Pattern.compile(toRegex(pattern)));
+    }
+
+    private static String literalPrefix(String pattern, Kind kind, String literal) {
+        switch (kind) {
+            case EXACT:
+            case PREFIX:
+                return literal;
+            case GLOB:
+                int i = 0;
+                while (i < pattern.length() && GLOB_META_CHARS.indexOf(pattern.charAt(i)) == -1) {
+                    i++;
+                }
+                return pattern.substring(0, i);
+            default:
+                return "";
+        }
+    }
+
+    private static boolean containsGlobMeta(String literal) {
+        for (int i = 0; i < literal.length(); i++) {
+            if (GLOB_META_CHARS.indexOf(literal.charAt(i)) != -1) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Checks whether a wildcard can span the given range: {@code *} stops at a separator, while
+     * {@code **} translates to {@code .*} and therefore stops at a line terminator.
+     */
+    private static boolean isWildcardSpan(String value, int from, int to, boolean crossesSegments) {
+        for (int i = from; i < to; i++) {
+            char c = value.charAt(i);
+            if (crossesSegments ? isLineTerminator(c) : c == '/') {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean isLineTerminator(char c) {
+        return c == '\n' || c == '\r' || c == '\u0085' || c == '\u2028' || c == '\u2029';
+    }
+
+    /**
+     * Applies the same normalization a Unix path does: repeated separators are collapsed
+     * and trailing separators are removed.
+     */
+    static String normalize(String value) {
+        int length = value.length();
+        char previous = 0;
+        for (int i = 0; i < length; i++) {
+            char c = value.charAt(i);
+            if (c == '/' && previous == '/') {
+                return normalize(value, i - 1);
+            }
+            previous = c;
+        }
+        return previous == '/' ? normalize(value, length - 1) : value;
+    }
+
+    private static String normalize(String value, int offset) {
+        int end = value.length();
+        while (end > 0 && value.charAt(end - 1) == '/') {
+            end--;
+        }
+        if (end == 0) {
+            return "/";
+        }
+        StringBuilder normalized = new StringBuilder(end);
+        normalized.append(value, 0, offset);
+        char previous = 0;
+        for (int i = offset; i < end; i++) {
+            char c = value.charAt(i);
+            if (c == '/' && previous == '/') {
+                continue;
+            }
+            normalized.append(c);
+            previous = c;
+        }
+        return normalized.toString();
+    }
+
+    private static String toRegex(String glob) {
+        boolean inGroup = false;
+        StringBuilder regex = new StringBuilder("^");
+
+        int i = 0;
+        while (i < glob.length()) {
+            char c = glob.charAt(i++);
+            switch (c) {
+                case '\\':
+                    if (i == glob.length()) {
+                        throw new PatternSyntaxException("No character to escape", glob, i - 1);
+                    }
+                    char next = glob.charAt(i++);
+                    if (GLOB_META_CHARS.indexOf(next) != -1 || REGEX_META_CHARS.indexOf(next) != -1) {
+                        regex.append('\\');
+                    }
+                    regex.append(next);
+                    break;
+                case '[':
+                    regex.append("[[^/]&&[");
+                    if (charAt(glob, i) == '^') {
+                        regex.append("\\^");
+                        i++;
+                    } else {
+                        if (charAt(glob, i) == '!') {
+                            regex.append('^');
+                            i++;
+                        }
+                        if (charAt(glob, i) == '-') {
+                            regex.append('-');
+                            i++;
+                        }
+                    }
+                    boolean hasRangeStart = false;
+                    char last = 0;
+                    while (i < glob.length()) {
+                        c = glob.charAt(i++);
+                        if (c == ']') {
+                            break;
+                        }
+                        if (c == '/') {
+                            throw new PatternSyntaxException("Explicit 'name separator' in class", glob, i - 1);
+                        }
+                        if (c == '\\' || c == '[' || c == '&' && charAt(glob, i) == '&') {
+                            regex.append('\\');
+                        }
+                        regex.append(c);
+
+                        if (c == '-') {
+                            if (!hasRangeStart) {
+                                throw new PatternSyntaxException("Invalid range", glob, i - 1);
+                            }
+                            if ((c = charAt(glob, i++)) == 0 || c == ']') {
+                                break;
+                            }
+                            if (c < last) {
+                                throw new PatternSyntaxException("Invalid range", glob, i - 3);
+                            }
+                            regex.append(c);
+                            hasRangeStart = false;
+                        } else {
+                            hasRangeStart = true;
+                            last = c;
+                        }
+                    }
+                    if (c != ']') {
+                        throw new PatternSyntaxException("Missing ']", glob, i - 1);
+                    }
+                    regex.append("]]");
+                    break;
+                case '{':
+                    if (inGroup) {
+                        throw new PatternSyntaxException("Cannot nest groups", glob, i - 1);
+                    }
+                    regex.append("(?:(?:");
+                    inGroup = true;
+                    break;
+                case '}':
+                    if (inGroup) {
+                        regex.append("))");
+                        inGroup = false;
+                    } else {
+                        regex.append('}');
+                    }
+                    break;
+                case ',':
+                    regex.append(inGroup ? ")|(?:" : ",");
+                    break;
+                case '*':
+                    if (charAt(glob, i) == '*') {
+                        regex.append(".*");
+                        i++;
+                    } else {
+                        regex.append("[^/]*");
+                    }
+                    break;
+                case '?':
+                    regex.append("[^/]");
+                    break;
+                default:
+                    if (REGEX_META_CHARS.indexOf(c) != -1) {
+                        regex.append('\\');
+                    }
+                    regex.append(c);
+            }
+        }
+
+        if (inGroup) {
+            throw new PatternSyntaxException("Missing '}", glob, i - 1);
+        }
+        return regex.append('$').toString();
+    }
+
+    private static char charAt(String glob, int index) {
+        return index < glob.length() ? glob.charAt(index) : 0;
+    }
+}
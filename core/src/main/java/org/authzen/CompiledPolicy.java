@@ -0,0 +1,283 @@
+package org.authzen;
+
+import lombok.Getter;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.IntStream;
+
+/**
+ * Immutable compiled form of a {@link Policy}, holding its statements in declaration order.
+ * Statements are indexed by the {@linkplain SymbolTable symbols} of resource type and action:
+ * statements whose action patterns all have a literal type are bucketed under each such type, and
+ * within it under each literal action, with the statements whose action is a wildcard added to every
+ * action bucket of their type. Statements with a wildcard type are added to every bucket. They are
+ * also indexed by the literal prefix of their resource patterns in a {@link ResourcePatternTrie}.
+ * Policies with at least {@link #BITMAP_THRESHOLD} statements additionally keep
+ * {@link StatementBitmaps}, which select candidates by principal too. Lookups only return statements
+ * that can possibly match, still to be checked against their patterns. The {@link DecisionDiagram}s of
+ * the statements are compiled on first use and kept with the policy.
+ */
+@Getter
+public final class CompiledPolicy {
+    public static final CompiledPolicy EMPTY = new CompiledPolicy(null, List.of());
+
+    /** Policies with at least this many statements select candidates through bit sets. */
+    static final int BITMAP_THRESHOLD = 256;
+    /** Action buckets smaller than this are returned as is rather than filtered through the trie. */
+    private static final int RESOURCE_TRIE_THRESHOLD = 8;
+
+    private final Policy policy;
+    private final List<CompiledStatement> statements;
+    @Getter(lombok.AccessLevel.NONE)
+    private final SymbolMap<TypeBucket> statementsByType;
+    @Getter(lombok.AccessLevel.NONE)
+    private final int[] wildcardTypeStatements;
+    @Getter(lombok.AccessLevel.NONE)
+    private final int[] allStatements;
+    @Getter(lombok.AccessLevel.NONE)
+    private final ResourcePatternTrie resourceTrie;
+    /** The bit sets of a policy with at least the bitmap threshold of statements, otherwise {@code null}. */
+    @Getter(lombok.AccessLevel.NONE)
+    private final StatementBitmaps bitmaps;
+    @Getter(lombok.AccessLevel.NONE)
+    private volatile DecisionDiagram identityDiagram;
+    @Getter(lombok.AccessLevel.NONE)
+    private volatile DecisionDiagram resourceDiagram;
+
+    CompiledPolicy(Policy policy, List<CompiledStatement> statements) {
+        this(policy, statements, BITMAP_THRESHOLD);
+    }
+
+    CompiledPolicy(Policy policy, List<CompiledStatement> statements, int bitmapThreshold) {
+        this.policy = policy;
+        this.statements = List.copyOf(statements);
+
+        Map<Integer, TypeBucketBuilder> byType = new HashMap<>();
+        List<Integer> wildcard = new ArrayList<>();
+        ResourcePatternTrie trie = new ResourcePatternTrie(this.statements.size());
+        for (int ordinal = 0; ordinal < this.statements.size(); ordinal++) {
+            CompiledStatement statement = this.statements.get(ordinal);
+            for (CompiledPattern resource : statement.getResources()) {
+                trie.add(resource.getLiteralPrefix(), ordinal);
+            }
+
+            Map<Integer, Set<Integer>> literals = literalActions(statement);
+            if (literals == null) {
+                wildcard.add(ordinal);
+                for (TypeBucketBuilder bucket : byType.values()) {
+                    bucket.addToAllActions(ordinal);
+                }
+                continue;
+            }
+            for (Map.Entry<Integer, Set<Integer>> entry : literals.entrySet()) {
+                TypeBucketBuilder bucket = byType.computeIfAbsent(entry.getKey(),
+                        type -> new TypeBucketBuilder(wildcard));
+                if (entry.getValue() == null) {
+                    bucket.addToAllActions(ordinal);
+                } else {
+                    for (int action : entry.getValue()) {
+                        bucket.add(action, ordinal);
+                    }
+                }
+            }
+        }
+        Map<Integer, TypeBucket> built = new HashMap<>(byType.size());
+        byType.forEach((type, bucket) -> built.put(type, bucket.build()));
+        this.statementsByType = SymbolMap.of(built);
+        this.wildcardTypeStatements = toArray(wildcard);
+        this.allStatements = IntStream.range(0, this.statements.size()).toArray();
+        this.resourceTrie = trie;
+        if (this.statements.size() >= bitmapThreshold) {
+            List<int[]> actionBuckets = new ArrayList<>(List.of(wildcardTypeStatements, allStatements));
+            built.values().forEach(bucket -> actionBuckets.addAll(bucket.buckets()));
+            this.bitmaps = new StatementBitmaps(this.statements, actionBuckets);
+        } else {
+            this.bitmaps = null;
+        }
+    }
+
+    /**
+     * Returns, in declaration order, the statements whose action patterns can match the given
+     * resource type and action.
+     */
+    public List<CompiledStatement> getStatementsForAction(String type, String action) {
+        List<CompiledStatement> candidates = new ArrayList<>();
+        for (int ordinal : actionBucket(SymbolTable.lookup(type), SymbolTable.lookup(action),
+                CompiledActionPattern.isSplittable(type, action))) {
+            candidates.add(statements.get(ordinal));
+        }
+        return candidates;
+    }
+
+    /**
+     * Adds, in declaration order, the statements whose action and resource patterns can match the
+     * given resource type, action and resource ID.
+     */
+    public void collectCandidates(String type, String action, String resourceId,
+                                  List<CompiledStatement> candidates) {
+        collectCandidates(SymbolTable.lookup(type), SymbolTable.lookup(action),
+                CompiledActionPattern.isSplittable(type, action), resourceId, candidates);
+    }
+
+    void collectCandidates(int typeSymbol, int actionSymbol, boolean splittable, String resourceId,
+                           List<CompiledStatement> candidates) {
+        int[] bucket = actionBucket(typeSymbol, actionSymbol, splittable);
+        if (bucket.length < RESOURCE_TRIE_THRESHOLD) {
+            for (int ordinal : bucket) {
+                candidates.add(statements.get(ordinal));
+            }
+            return;
+        }
+        BitSet resourceCandidates = resourceTrie.candidates(CompiledPattern.normalize(resourceId));
+        for (int ordinal : bucket) {
+            if (resourceCandidates.get(ordinal)) {
+                candidates.add(statements.get(ordinal));
+            }
+        }
+    }
+
+    /**
+     * Adds the candidate statements to {@code denies} or {@code allows} by effect, each in declaration
+     * order; given the same list twice, all candidates are added to it in declaration order. Policies
+     * with bit sets only return candidates whose principal patterns can match the identity.
+     */
+    void collectCandidates(int typeSymbol, int actionSymbol, boolean splittable, String resourceId,
+                           PrincipalIdentity identity, boolean isIdentityPolicy,
+                           List<CompiledStatement> denies, List<CompiledStatement> allows) {
+        if (bitmaps == null) {
+            List<CompiledStatement> candidates = denies == allows ? denies : new ArrayList<>();
+            collectCandidates(typeSymbol, actionSymbol, splittable, resourceId, candidates);
+            if (candidates != denies) {
+                for (CompiledStatement statement : candidates) {
+                    (statement.getEffect() == Effect.DENY ? denies : allows).add(statement);
+                }
+            }
+            return;
+        }
+        BitSet candidates = bitmaps.candidates(actionBucket(typeSymbol, actionSymbol, splittable),
+                resourceTrie.candidates(CompiledPattern.normalize(resourceId)), identity, isIdentityPolicy);
+        if (denies == allows) {
+            addAll(candidates, denies);
+            return;
+        }
+        BitSet allowCandidates = (BitSet) candidates.clone();
+        candidates.and(bitmaps.getDenies());
+        allowCandidates.and(bitmaps.getAllows());
+        addAll(candidates, denies);
+        addAll(allowCandidates, allows);
+    }
+
+    private void addAll(BitSet ordinals, List<CompiledStatement> candidates) {
+        for (int ordinal = ordinals.nextSetBit(0); ordinal >= 0; ordinal = ordinals.nextSetBit(ordinal + 1)) {
+            candidates.add(statements.get(ordinal));
+        }
+    }
+
+    /**
+     * Returns the decision diagram of the statements evaluated as an identity or a resource policy,
+     * compiling it on first use. Concurrent first uses may each compile it.
+     */
+    DecisionDiagram getDiagram(boolean isIdentityPolicy) {
+        DecisionDiagram diagram = isIdentityPolicy ? identityDiagram : resourceDiagram;
+        if (diagram == null) {
+            diagram = DecisionDiagram.compile(this, isIdentityPolicy);
+            if (isIdentityPolicy) {
+                identityDiagram = diagram;
+            } else {
+                resourceDiagram = diagram;
+            }
+        }
+        return diagram;
+    }
+
+    private int[] actionBucket(int typeSymbol, int actionSymbol, boolean splittable) {
+        if (!splittable) {
+            // matched against type:action, which the index does not cover
+            return allStatements;
+        }
+        TypeBucket bucket = statementsByType.get(typeSymbol);
+        if (bucket == null) {
+            return wildcardTypeStatements;
+        }
+        int[] statementsForAction = bucket.byAction.get(actionSymbol);
+        return statementsForAction != null ? statementsForAction : bucket.allActions;
+    }
+
+    /**
+     * Returns the symbols of the literal actions of the statement by the symbol of their literal type,
+     * with {@code null} standing for any action of the type, or {@code null} if one of its action patterns
+     * does not have a literal type.
+     */
+    private static Map<Integer, Set<Integer>> literalActions(CompiledStatement statement) {
+        Map<Integer, Set<Integer>> literals = new LinkedHashMap<>();
+        for (CompiledActionPattern pattern : statement.getActions()) {
+            int type = pattern.getTypeSymbol();
+            if (type == SymbolTable.UNKNOWN) {
+                return null;
+            }
+            int action = pattern.getActionSymbol();
+            if (action == SymbolTable.UNKNOWN) {
+                literals.put(type, null);
+            } else if (!literals.containsKey(type) || literals.get(type) != null) {
+                literals.computeIfAbsent(type, key -> new LinkedHashSet<>()).add(action);
+            }
+        }
+        return literals;
+    }
+
+    private static final class TypeBucket {
+        private final SymbolMap<int[]> byAction;
+        /** The statements matching any action of the type, returned for actions without a bucket. */
+        private final int[] allActions;
+
+        private final List<int[]> buckets;
+
+        private TypeBucket(SymbolMap<int[]> byAction, List<int[]> actionBuckets, int[] allActions) {
+            this.byAction = byAction;
+            this.allActions = allActions;
+            this.buckets = new ArrayList<>(actionBuckets);
+            buckets.add(allActions);
+        }
+
+        /** Returns every bucket of the type, including the one of all its actions. */
+        List<int[]> buckets() {
+            return buckets;
+        }
+    }
+
+    private static final class TypeBucketBuilder {
+        private final Map<Integer, List<Integer>> byAction = new HashMap<>();
+        private final List<Integer> allActions;
+
+        private TypeBucketBuilder(List<Integer> wildcardTypeStatements) {
+            this.allActions = new ArrayList<>(wildcardTypeStatements);
+        }
+
+        void addToAllActions(int ordinal) {
+            allActions.add(ordinal);
+            for (List<Integer> bucket : byAction.values()) {
+                bucket.add(ordinal);
+            }
+        }
+
+        void add(int action, int ordinal) {
+            byAction.computeIfAbsent(action, key -> new ArrayList<>(allActions)).add(ordinal);
+        }
+
+        TypeBucket build() {
+            Map<Integer, int[]> built = new HashMap<>(byAction.size());
+            byAction.forEach((action, bucket) -> built.put(action, toArray(bucket)));
+            return new TypeBucket(SymbolMap.of(built), List.copyOf(built.values()), toArray(allActions));
+        }
+    }
+
+    private static int[] toArray(List<Integer> ordinals) {
+        return ordinals.stream().mapToInt(Integer::intValue).toArray();
+    }
+}
@@ -0,0 +1,164 @@
+package org.authzen;
+
+import lombok.AccessLevel;
+import lombok.Getter;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Immutable compiled form of a {@link Statement}: its patterns compiled into matchers and its
+ * condition parsed, so that evaluating it does no parsing at all.
+ */
+@Getter
+public final class CompiledStatement {
+    private final Statement statement;
+    private final Effect effect;
+    private final List<CompiledPattern> principals;
+    private final List<CompiledPattern> notPrincipals;
+    private final List<CompiledActionPattern> actions;
+    private final List<CompiledPattern> resources;
+    private final CompiledCondition condition;
+    @Getter(AccessLevel.NONE)
+    private final PrincipalPatterns principalPatterns;
+    @Getter(AccessLevel.NONE)
+    private final PrincipalPatterns notPrincipalPatterns;
+
+    CompiledStatement(Statement statement, List<CompiledPattern> principals, List<CompiledPattern> notPrincipals,
+                      List<CompiledActionPattern> actions, List<CompiledPattern> resources,
+                      CompiledCondition condition) {
+        this.statement = statement;
+        this.effect = statement.getEffect();
+        this.principals = List.copyOf(principals);
+        this.notPrincipals = List.copyOf(notPrincipals);
+        this.actions = List.copyOf(actions);
+        this.resources = List.copyOf(resources);
+        this.condition = condition;
+        this.principalPatterns = new PrincipalPatterns(this.principals);
+        this.notPrincipalPatterns = new PrincipalPatterns(this.notPrincipals);
+    }
+
+    /**
+     * Matches the action patterns against a {@code type:action} value.
+     */
+    public boolean matchesAction(String action) {
+        for (int i = 0; i < actions.size(); i++) {
+            if (actions.get(i).getPattern().matches(action)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Matches the action patterns against a resource type and action, as {@link #matchesAction(String)}
+     * does against {@code type:action}.
+     */
+    public boolean matchesAction(String type, String action) {
+        return matchesAction(type, SymbolTable.lookup(type), action, SymbolTable.lookup(action),
+                CompiledActionPattern.isSplittable(type, action));
+    }
+
+    boolean matchesAction(String type, int typeSymbol, String action, int actionSymbol, boolean splittable) {
+        for (int i = 0; i < actions.size(); i++) {
+            if (actions.get(i).matches(type, typeSymbol, action, actionSymbol, splittable)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    public boolean matchesResource(String resourceId) {
+        return matchesAny(resources, resourceId);
+    }
+
+    boolean matchesPrincipal(PrincipalIdentity identity) {
+        return principalPatterns.matches(identity);
+    }
+
+    boolean matchesNotPrincipal(PrincipalIdentity identity) {
+        return notPrincipalPatterns.matches(identity);
+    }
+
+    /**
+     * Returns the symbols of the literal principal patterns in ascending order.
+     */
+    int[] getPrincipalSymbols() {
+        return principalPatterns.literals;
+    }
+
+    boolean hasWildcardPrincipals() {
+        return !principalPatterns.wildcards.isEmpty();
+    }
+
+    /**
+     * Checks the principal patterns against the requesting principal. A statement without principals
+     * never applies in an identity policy and applies to everyone in a resource policy.
+     */
+    boolean appliesTo(PrincipalIdentity identity, boolean isIdentityPolicy) {
+        if (principals.isEmpty()) {
+            return !isIdentityPolicy;
+        }
+        return matchesPrincipal(identity) && !matchesNotPrincipal(identity);
+    }
+
+    static boolean matchesAny(List<CompiledPattern> patterns, String value) {
+        for (int i = 0; i < patterns.size(); i++) {
+            if (patterns.get(i).matches(value)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Principal patterns split into literal IDs, interned and checked by intersecting sorted symbols,
+     * and wildcard patterns, the only ones that have to be matched against every ID of the principal.
+     */
+    private static final class PrincipalPatterns {
+        private final int[] literals;
+        /** Keeps the symbols of the literals interned while the statement is in use. */
+        private final List<SymbolTable.Symbol> symbols = new ArrayList<>();
+        private final List<CompiledPattern> wildcards = new ArrayList<>();
+
+        PrincipalPatterns(List<CompiledPattern> patterns) {
+            for (CompiledPattern pattern : patterns) {
+                if (pattern.getKind() == CompiledPattern.Kind.EXACT) {
+                    symbols.add(SymbolTable.intern(pattern.getLiteral()));
+                } else {
+                    wildcards.add(pattern);
+                }
+            }
+            this.literals = symbols.stream().mapToInt(SymbolTable.Symbol::getId).sorted().distinct().toArray();
+        }
+
+        boolean matches(PrincipalIdentity identity) {
+            if (literals.length > 0 && intersects(literals, identity.getSymbols())) {
+                return true;
+            }
+            for (CompiledPattern pattern : wildcards) {
+                for (String id : identity.getIds()) {
+                    if (pattern.matches(id)) {
+                        return true;
+                    }
+                }
+            }
+            return false;
+        }
+
+        private static boolean intersects(int[] sorted, int[] otherSorted) {
+            int i = 0;
+            int j = 0;
+            while (i < sorted.length && j < otherSorted.length) {
+                if (sorted[i] == otherSorted[j]) {
+                    return true;
+                }
+                if (sorted[i] < otherSorted[j]) {
+                    i++;
+                } else {
+                    j++;
+                }
+            }
+            return false;
+        }
+    }
+}
@@ -0,0 +1,117 @@
+package org.authzen;
+
+import org.apache.commons.jexl3.JexlExpression;
+import org.apache.commons.jexl3.JexlScript;
+import java.lang.reflect.Method;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Derives the {@link ConditionDependencies} of a compiled JEXL condition through the public
+ * {@link JexlScript} API. Referenced variables and property paths come from the script itself; calls
+ * and assignments are found by scanning the canonical text JEXL prints from the syntax tree.
+ * Namespace functions, constructors, assignments, increments and methods other than well-known
+ * side-effect-free ones and the getters of the request model types make a condition non-deterministic.
+ */
+final class ConditionAnalyzer {
+    private static final Set<String> PURE_METHODS = Set.of(
+            "size", "isEmpty", "length", "contains", "containsKey", "containsValue", "containsAll",
+            "startsWith", "endsWith", "equals", "equalsIgnoreCase", "compareTo", "indexOf", "lastIndexOf",
+            "matches", "substring", "trim", "strip", "toLowerCase", "toUpperCase", "toString", "hashCode");
+    /** The getters of principals, roles and resources as declared by this library, not by subclasses. */
+    private static final Set<String> MODEL_GETTERS = Stream.of(
+                    Principal.class, Role.class, Resource.class, Attributed.class)
+            .flatMap(type -> Arrays.stream(type.getMethods()))
+            .filter(method -> ConditionPermissions.isGetter(method) || method.getName().equals("getAttribute"))
+            .map(Method::getName)
+            .collect(Collectors.toUnmodifiableSet());
+    /** Operators written as words, which JEXL prints followed by a parenthesis. */
+    private static final Set<String> OPERATORS = Set.of("size", "empty", "not", "and", "or");
+
+    private ConditionAnalyzer() {
+    }
+
+    static ConditionDependencies analyze(JexlExpression expression) {
+        JexlScript script = (JexlScript) expression;
+        Set<List<String>> paths = new HashSet<>();
+        Set<String> roots = new HashSet<>();
+        for (List<String> path : script.getVariables()) {
+            paths.add(List.copyOf(path));
+            roots.add(path.get(0));
+        }
+        return new ConditionDependencies(roots, paths, isDeterministic(script.getParsedText()));
+    }
+
+    private static boolean isDeterministic(String text) {
+        int i = 0;
+        while (i < text.length()) {
+            char c = text.charAt(i);
+            if (c == '`') {
+                // template strings may embed any expression
+                return false;
+            }
+            if (c == '\'' || c == '"' || c == '~' && i + 1 < text.length() && text.charAt(i + 1) == '/') {
+                int start = i;
+                i = skipLiteral(text, c == '~' ? i + 1 : i);
+                // JEXL quotes method names that are keywords, such as .'size'()
+                if (isCall(text, i) && (c == '~' || !isPureCall(text, start, text.substring(start + 1, i - 1)))) {
+                    return false;
+                }
+                continue;
+            }
+            if (Character.isJavaIdentifierStart(c)) {
+                int start = i;
+                while (i < text.length() && Character.isJavaIdentifierPart(text.charAt(i))) {
+                    i++;
+                }
+                if (isCall(text, i) && !isPureCall(text, start, text.substring(start, i))) {
+                    return false;
+                }
+                continue;
+            }
+            if (c == '=' && isAssignment(text, i) || (c == '+' || c == '-') && i + 1 < text.length() &&
+                                                      text.charAt(i + 1) == c) {
+                return false;
+            }
+            i++;
+        }
+        return true;
+    }
+
+    /** Returns whether a method call on a value, or a word operator, is free of side effects. */
+    private static boolean isPureCall(String text, int start, String name) {
+        boolean method = start > 0 && text.charAt(start - 1) == '.';
+        if (!method) {
+            return OPERATORS.contains(name);
+        }
+        return PURE_METHODS.contains(name) || MODEL_GETTERS.contains(name);
+    }
+
+    private static boolean isCall(String text, int from) {
+        while (from < text.length() && text.charAt(from) == ' ') {
+            from++;
+        }
+        return from < text.length() && text.charAt(from) == '(';
+    }
+
+    /** Whether the {@code =} at the index assigns, rather than being part of a comparison operator. */
+    private static boolean isAssignment(String text, int index) {
+        char previous = index > 0 ? text.charAt(index - 1) : ' ';
+        char next = index + 1 < text.length() ? text.charAt(index + 1) : ' ';
+        return "=!<>".indexOf(previous) < 0 && "=~^$>".indexOf(next) < 0;
+    }
+
+    /** Returns the index after the literal starting with the quote at the index. */
+    private static int skipLiteral(String text, int start) {
+        char quote = text.charAt(start);
+        int i = start + 1;
+        while (i < text.length() && text.charAt(i) != quote) {
+            i += text.charAt(i) == '\\' ? 2 : 1;
+        }
+        return i + 1;
+    }
+}
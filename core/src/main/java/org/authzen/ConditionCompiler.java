@@ -0,0 +1,375 @@
+package org.authzen;
+
+import org.apache.commons.jexl3.JexlArithmetic;
+import org.apache.commons.jexl3.JexlContext;
+import org.apache.commons.jexl3.JexlEngine;
+import org.apache.commons.jexl3.JexlExpression;
+import org.apache.commons.jexl3.JexlOperator;
+import org.apache.commons.jexl3.MapContext;
+import org.apache.commons.jexl3.internal.Debugger;
+import org.apache.commons.jexl3.introspection.JexlPropertyGet;
+import org.apache.commons.jexl3.introspection.JexlUberspect;
+import org.apache.commons.jexl3.parser.ASTAndNode;
+import org.apache.commons.jexl3.parser.ASTArrayAccess;
+import org.apache.commons.jexl3.parser.ASTArrayLiteral;
+import org.apache.commons.jexl3.parser.ASTEQNode;
+import org.apache.commons.jexl3.parser.ASTERNode;
+import org.apache.commons.jexl3.parser.ASTEWNode;
+import org.apache.commons.jexl3.parser.ASTFalseNode;
+import org.apache.commons.jexl3.parser.ASTGENode;
+import org.apache.commons.jexl3.parser.ASTGTNode;
+import org.apache.commons.jexl3.parser.ASTIdentifier;
+import org.apache.commons.jexl3.parser.ASTIdentifierAccess;
+import org.apache.commons.jexl3.parser.ASTJexlScript;
+import org.apache.commons.jexl3.parser.ASTLENode;
+import org.apache.commons.jexl3.parser.ASTLTNode;
+import org.apache.commons.jexl3.parser.ASTNENode;
+import org.apache.commons.jexl3.parser.ASTNEWNode;
+import org.apache.commons.jexl3.parser.ASTNRNode;
+import org.apache.commons.jexl3.parser.ASTNSWNode;
+import org.apache.commons.jexl3.parser.ASTNotNode;
+import org.apache.commons.jexl3.parser.ASTNullLiteral;
+import org.apache.commons.jexl3.parser.ASTNumberLiteral;
+import org.apache.commons.jexl3.parser.ASTOrNode;
+import org.apache.commons.jexl3.parser.ASTReference;
+import org.apache.commons.jexl3.parser.ASTReferenceExpression;
+import org.apache.commons.jexl3.parser.ASTSWNode;
+import org.apache.commons.jexl3.parser.ASTStringLiteral;
+import org.apache.commons.jexl3.parser.ASTTrueNode;
+import org.apache.commons.jexl3.parser.JexlNode;
+import java.util.Set;
+import java.util.function.BiPredicate;
+
+/**
+ * Compiles the common subset of JEXL conditions into a tree of closures, so that evaluating them does
+ * not go through the JEXL interpreter: literals, {@code principal}, {@code resource}, {@code action} and
+ * {@code context} with property and constant index access, comparisons, {@code =~}/{@code !~} against
+ * array literals and strings, {@code =^}/{@code =$} and their negations, and {@code &&}, {@code ||}
+ * and {@code !}.
+ * <p>
+ * Operators delegate to the engine's {@link JexlArithmetic} and property access to its
+ * {@link JexlUberspect}, so the results, coercions and permissions are those of the interpreter.
+ * Anything else is not compiled, and the few cases the interpreter resolves in ways not replicated
+ * here are handed back to it at evaluation time.
+ * <p>
+ * This is the only class that reads JEXL's syntax tree, which is not part of its public API. It is
+ * pinned to the JEXL release it was written against: with any other release on the class path
+ * nothing is compiled and every condition is interpreted.
+ */
+final class ConditionCompiler {
+    /** The JEXL release whose syntax tree classes this compiler reads. */
+    static final String JEXL_VERSION = "3.6.2";
+    private static final boolean SUPPORTED = JEXL_VERSION.equals(jexlVersion());
+    private static final Set<String> REQUEST_ROOTS = Set.of("principal", "resource", "action", "context");
+
+    /** A compiled condition or part of it. */
+    @FunctionalInterface
+    interface Evaluator {
+        Object evaluate(JexlContext context) throws Exception;
+    }
+
+    /**
+     * Thrown while evaluating a compiled condition that the interpreter must evaluate instead.
+     * It is a shared instance without stack trace.
+     */
+    static final class Fallback extends RuntimeException {
+        static final Fallback INSTANCE = new Fallback();
+
+        private Fallback() {
+            super(null, null, false, false);
+        }
+    }
+
+    /** Signals a construct outside the supported subset while compiling. */
+    private static final class Unsupported extends Exception {
+        private static final Unsupported INSTANCE = new Unsupported();
+
+        private Unsupported() {
+            super(null, null, false, false);
+        }
+    }
+
+    private final JexlEngine engine;
+    private final JexlArithmetic arithmetic;
+    private final JexlUberspect uberspect;
+
+    ConditionCompiler(JexlEngine engine) {
+        this.engine = engine;
+        this.arithmetic = engine.getArithmetic();
+        this.uberspect = engine.getUberspect();
+    }
+
+    /** Returns the version of the JEXL release on the class path, or {@code null} if it is unknown. */
+    static String jexlVersion() {
+        Package jexl = JexlEngine.class.getPackage();
+        return jexl != null ? jexl.getImplementationVersion() : null;
+    }
+
+    /**
+     * Returns the compiled form of the expression, or {@code null} if it uses anything outside the
+     * supported subset or the JEXL release is not the one this compiler reads.
+     */
+    Evaluator compile(JexlExpression expression) {
+        if (!SUPPORTED) {
+            return null;
+        }
+        try {
+            ASTJexlScript script = ScriptCapture.of(expression);
+            if (script == null || script.jjtGetNumChildren() != 1) {
+                return null;
+            }
+            return compile(script.jjtGetChild(0));
+        } catch (Unsupported | LinkageError e) {
+            return null;
+        }
+    }
+
+    private Evaluator compile(JexlNode node) throws Unsupported {
+        if (node instanceof ASTReferenceExpression && node.jjtGetNumChildren() == 1) {
+            return compile(node.jjtGetChild(0));
+        }
+        if (isConstant(node)) {
+            Object value = constant(node);
+            return context -> value;
+        }
+        if (node instanceof ASTReference || node instanceof ASTIdentifier) {
+            return reference(node);
+        }
+        if (node instanceof ASTAndNode) {
+            return logical(node, false);
+        }
+        if (node instanceof ASTOrNode) {
+            return logical(node, true);
+        }
+        if (node instanceof ASTNotNode) {
+            Evaluator operand = compile(node.jjtGetChild(0));
+            return context -> arithmetic.not(operand.evaluate(context));
+        }
+        if (node instanceof ASTEQNode) {
+            return comparison(node, arithmetic::equals);
+        }
+        if (node instanceof ASTNENode) {
+            return comparison(node, (left, right) -> !arithmetic.equals(left, right));
+        }
+        if (node instanceof ASTLTNode) {
+            return comparison(node, arithmetic::lessThan);
+        }
+        if (node instanceof ASTLENode) {
+            return comparison(node, arithmetic::lessThanOrEqual);
+        }
+        if (node instanceof ASTGTNode) {
+            return comparison(node, arithmetic::greaterThan);
+        }
+        if (node instanceof ASTGENode) {
+            return comparison(node, arithmetic::greaterThanOrEqual);
+        }
+        if (node instanceof ASTERNode || node instanceof ASTNRNode) {
+            return membership(node, node instanceof ASTERNode);
+        }
+        if (node instanceof ASTSWNode || node instanceof ASTNSWNode) {
+            return affix(node, true, node instanceof ASTSWNode);
+        }
+        if (node instanceof ASTEWNode || node instanceof ASTNEWNode) {
+            return affix(node, false, node instanceof ASTEWNode);
+        }
+        throw Unsupported.INSTANCE;
+    }
+
+    /**
+     * Like the interpreter, {@code &&} and {@code ||} return the first operand that decides the result,
+     * or the last one, rather than a boolean.
+     */
+    private Evaluator logical(JexlNode node, boolean or) throws Unsupported {
+        Evaluator[] operands = new Evaluator[node.jjtGetNumChildren()];
+        for (int i = 0; i < operands.length; i++) {
+            operands[i] = compile(node.jjtGetChild(i));
+        }
+        return context -> {
+            Object value = null;
+            for (Evaluator operand : operands) {
+                value = operand.evaluate(context);
+                if (arithmetic.toBoolean(value) == or) {
+                    return value;
+                }
+            }
+            return value;
+        };
+    }
+
+    private Evaluator comparison(JexlNode node, BiPredicate<Object, Object> operator) throws Unsupported {
+        Evaluator left = compile(node.jjtGetChild(0));
+        Evaluator right = compile(node.jjtGetChild(1));
+        return context -> operator.test(left.evaluate(context), right.evaluate(context));
+    }
+
+    /**
+     * {@code value =~ container}, compiled only for array literal and string containers whose
+     * membership test the arithmetic decides on its own.
+     */
+    private Evaluator membership(JexlNode node, boolean positive) throws Unsupported {
+        JexlNode containerNode = node.jjtGetChild(1);
+        if (!(containerNode instanceof ASTArrayLiteral || containerNode instanceof ASTStringLiteral) ||
+            !isConstant(containerNode)) {
+            throw Unsupported.INSTANCE;
+        }
+        Evaluator value = compile(node.jjtGetChild(0));
+        Object container = constant(containerNode);
+        return context -> decided(arithmetic.contains(container, value.evaluate(context))) == positive;
+    }
+
+    private Evaluator affix(JexlNode node, boolean prefix, boolean positive) throws Unsupported {
+        Evaluator left = compile(node.jjtGetChild(0));
+        Evaluator right = compile(node.jjtGetChild(1));
+        return context -> {
+            Object value = left.evaluate(context);
+            Object affix = right.evaluate(context);
+            Boolean matches = prefix ? arithmetic.startsWith(value, affix) : arithmetic.endsWith(value, affix);
+            return decided(matches) == positive;
+        };
+    }
+
+    /** Returns the arithmetic's answer, or hands the condition back to the interpreter if it had none. */
+    private static boolean decided(Boolean result) {
+        if (result == null) {
+            throw Fallback.INSTANCE;
+        }
+        return result;
+    }
+
+    /**
+     * A request variable followed by property accesses ({@code a.b}) and constant index accesses
+     * ({@code a['b']}, {@code a[0]}).
+     */
+    private Evaluator reference(JexlNode node) throws Unsupported {
+        JexlNode root = node instanceof ASTIdentifier ? node : node.jjtGetChild(0);
+        if (root.getClass() != ASTIdentifier.class || !REQUEST_ROOTS.contains(((ASTIdentifier) root).getName())) {
+            throw Unsupported.INSTANCE;
+        }
+        String name = ((ASTIdentifier) root).getName();
+        Evaluator evaluator = context -> variable(context, name);
+        int accesses = node instanceof ASTIdentifier ? 0 : node.jjtGetNumChildren();
+        for (int i = 1; i < accesses; i++) {
+            evaluator = access(evaluator, node.jjtGetChild(i));
+        }
+        return evaluator;
+    }
+
+    private static Object variable(JexlContext context, String name) {
+        Object value = context.get(name);
+        if (value == null && !context.has(name)) {
+            // the interpreter then looks for dotted ("antish") variable names such as "context.time"
+            throw Fallback.INSTANCE;
+        }
+        return value;
+    }
+
+    private Evaluator access(Evaluator target, JexlNode node) throws Unsupported {
+        if (node.getClass() == ASTIdentifierAccess.class && !((ASTIdentifierAccess) node).isExpression()) {
+            return property(target, ((ASTIdentifierAccess) node).getIdentifier(), JexlOperator.PROPERTY_GET);
+        }
+        if (!(node instanceof ASTArrayAccess)) {
+            throw Unsupported.INSTANCE;
+        }
+        // a[x][y] is a single node with one child per index
+        Evaluator evaluator = target;
+        for (int i = 0; i < node.jjtGetNumChildren(); i++) {
+            JexlNode index = node.jjtGetChild(i);
+            if (!(index instanceof ASTStringLiteral || index instanceof ASTNumberLiteral)) {
+                throw Unsupported.INSTANCE;
+            }
+            evaluator = property(evaluator, constant(index), JexlOperator.ARRAY_GET);
+        }
+        return evaluator;
+    }
+
+    private Evaluator property(Evaluator target, Object key, JexlOperator operator) {
+        PropertyAccess access = new PropertyAccess(key, operator);
+        return context -> access.get(target.evaluate(context));
+    }
+
+    /**
+     * Reads one property, keeping the last resolved accessor the way the interpreter caches it on
+     * its syntax tree nodes.
+     */
+    private final class PropertyAccess {
+        private final Object key;
+        private final JexlOperator operator;
+        private volatile JexlPropertyGet cached;
+
+        private PropertyAccess(Object key, JexlOperator operator) {
+            this.key = key;
+            this.operator = operator;
+        }
+
+        Object get(Object object) {
+            if (object == null) {
+                return null;
+            }
+            try {
+                return resolveAndGet(object);
+            } catch (Exception e) {
+                // the interpreter decides how a failing accessor affects the condition
+                throw Fallback.INSTANCE;
+            }
+        }
+
+        private Object resolveAndGet(Object object) throws Exception {
+            JexlPropertyGet getter = cached;
+            if (getter != null) {
+                Object value = getter.tryInvoke(object, key);
+                if (!getter.tryFailed(value)) {
+                    return value;
+                }
+            }
+            getter = uberspect.getPropertyGet(uberspect.getResolvers(operator, object), object, key);
+            if (getter == null) {
+                return null;
+            }
+            if (getter.isCacheable()) {
+                cached = getter;
+            }
+            return getter.invoke(object);
+        }
+    }
+
+    private static boolean isConstant(JexlNode node) {
+        if (node instanceof ASTArrayLiteral) {
+            for (int i = 0; i < node.jjtGetNumChildren(); i++) {
+                if (!isConstant(node.jjtGetChild(i))) {
+                    return false;
+                }
+            }
+            return true;
+        }
+        return node instanceof ASTStringLiteral || node instanceof ASTNumberLiteral ||
+               node instanceof ASTTrueNode || node instanceof ASTFalseNode || node instanceof ASTNullLiteral;
+    }
+
+    /** Evaluates a constant with the interpreter once, so that it has exactly the interpreter's value. */
+    private Object constant(JexlNode node) throws Unsupported {
+        Debugger source = new Debugger();
+        source.debug(node, false);
+        try {
+            return engine.createExpression(source.toString()).evaluate(new MapContext());
+        } catch (RuntimeException e) {
+            throw Unsupported.INSTANCE;
+        }
+    }
+
+    /** Retrieves the syntax tree of a compiled expression through the visitor the engine exposes. */
+    private static final class ScriptCapture extends Debugger {
+        private ASTJexlScript script;
+
+        static ASTJexlScript of(JexlExpression expression) {
+            ScriptCapture capture = new ScriptCapture();
+            capture.debug(expression);
+            return capture.script;
+        }
+
+        @Override
+        protected Object visit(ASTJexlScript node, Object data) {
+            script = node;
+            return data;
+        }
+    }
+}
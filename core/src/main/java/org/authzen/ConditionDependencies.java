@@ -0,0 +1,116 @@
+package org.authzen;
+
+import lombok.AccessLevel;
+import lombok.EqualsAndHashCode;
+import lombok.Getter;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+/**
+ * What a condition reads, found by static analysis of its compiled expression: the variables it
+ * references ({@code principal}, {@code resource}, {@code action}, {@code context} or others), the
+ * property paths it reads from them, and whether it calls anything whose result may differ between
+ * two evaluations with the same inputs.
+ * <p>
+ * A path such as {@code [principal, department]} stops at the first dynamic access or method call,
+ * so {@code principal.getRoles().size()} is reported as reading all of {@code [principal]}.
+ */
+@Getter
+@EqualsAndHashCode
+public final class ConditionDependencies {
+    /** The dependencies of a condition that reads nothing, such as a missing or invalid condition. */
+    public static final ConditionDependencies NONE = new ConditionDependencies(Set.of(), Set.of(), true);
+    /** The dependencies of a condition that may read anything, in a non-deterministic way. */
+    public static final ConditionDependencies UNKNOWN = new ConditionDependencies(
+            Set.of("principal", "resource", "action", "context"),
+            Set.of(List.of("principal"), List.of("resource"), List.of("action"), List.of("context")),
+            false);
+
+    private static final List<String> REQUEST_ROOTS = List.of("principal", "resource", "action", "context");
+
+    private final Set<String> roots;
+    private final Set<List<String>> paths;
+    private final boolean deterministic;
+    /** The paths read from the context, each starting with {@code context}. */
+    @Getter(AccessLevel.PACKAGE)
+    private final Set<List<String>> contextPaths;
+    @Getter(AccessLevel.NONE)
+    private final boolean readsPrincipalAttributes;
+    @Getter(AccessLevel.NONE)
+    private final boolean readsResourceAttributes;
+    @Getter(AccessLevel.NONE)
+    private final boolean principalOnly;
+    @Getter(AccessLevel.NONE)
+    private final boolean resourceOnly;
+
+    ConditionDependencies(Set<String> roots, Set<List<String>> paths, boolean deterministic) {
+        this.roots = Set.copyOf(roots);
+        this.paths = Set.copyOf(paths);
+        this.deterministic = deterministic;
+        this.contextPaths = this.paths.stream()
+                .filter(path -> path.get(0).equals("context"))
+                .collect(Collectors.toUnmodifiableSet());
+        this.readsPrincipalAttributes = readsBeyond("principal", Set.of("id"));
+        this.readsResourceAttributes = readsBeyond("resource", Set.of("id", "type"));
+        this.principalOnly = deterministic && readsOnly("principal");
+        this.resourceOnly = deterministic && readsOnly("resource");
+    }
+
+    public boolean readsPrincipal() {
+        return roots.contains("principal");
+    }
+
+    public boolean readsResource() {
+        return roots.contains("resource");
+    }
+
+    public boolean readsAction() {
+        return roots.contains("action");
+    }
+
+    public boolean readsContext() {
+        return roots.contains("context");
+    }
+
+    /** Whether the condition reads anything of the principal other than its ID. */
+    boolean readsPrincipalAttributes() {
+        return readsPrincipalAttributes;
+    }
+
+    /** Whether the condition reads anything of the resource other than its ID and type. */
+    boolean readsResourceAttributes() {
+        return readsResourceAttributes;
+    }
+
+    /** Whether the result depends on nothing but the principal, so it can be reused per principal version. */
+    boolean isPrincipalOnly() {
+        return principalOnly;
+    }
+
+    /** Whether the result depends on nothing but the resource, so it can be reused per resource version. */
+    boolean isResourceOnly() {
+        return resourceOnly;
+    }
+
+    private boolean readsOnly(String root) {
+        if (!roots.contains(root)) {
+            return false;
+        }
+        for (String other : REQUEST_ROOTS) {
+            if (!other.equals(root) && roots.contains(other)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private boolean readsBeyond(String root, Set<String> properties) {
+        for (List<String> path : paths) {
+            if (path.get(0).equals(root) && (path.size() == 1 || !properties.contains(path.get(1)))) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
@@ -1,28 +1,193 @@
 package org.authzen;
 
-import org.apache.commons.jexl3.JexlBuilder;
+import lombok.Value;
 import org.apache.commons.jexl3.JexlContext;
-import org.apache.commons.jexl3.JexlEngine;
 import org.apache.commons.jexl3.MapContext;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 
+/**
+ * Evaluates statement conditions written in any registered {@link ConditionLanguage}; JEXL is the
+ * default and {@link NativeConditionLanguage} is always available. Each distinct condition is parsed
+ * once and kept in a bounded cache; once the cache is full the oldest conditions are evicted first.
+ */
 public class ConditionEvaluator {
-    private static final JexlEngine JEXL = new JexlBuilder()
-            .safe(false)
-            .silent(false)
-            .strict(false)
-            .create();
+    public static final int DEFAULT_CACHE_SIZE = 10_000;
 
-    public boolean evaluate(String expression, Map<String, Object> context) {
+    private final BoundedCache<Key, CompiledCondition> cache;
+    private final Map<String, ConditionLanguage> languages = new HashMap<>();
+
+    public ConditionEvaluator() {
+        this(DEFAULT_CACHE_SIZE);
+    }
+
+    public ConditionEvaluator(int maximumCacheSize) {
+        this(maximumCacheSize, false);
+    }
+
+    public ConditionEvaluator(int maximumCacheSize, boolean compileConditions) {
+        this(maximumCacheSize, compileConditions, List.of());
+    }
+
+    /**
+     * @param compileConditions whether JEXL conditions are also compiled by a {@link ConditionCompiler}
+     * @param additionalLanguages languages to register besides the built-in ones, which they replace
+     *                            if they have the same name
+     */
+    public ConditionEvaluator(int maximumCacheSize, boolean compileConditions,
+                              List<? extends ConditionLanguage> additionalLanguages) {
+        this.cache = new BoundedCache<>(maximumCacheSize);
+        register(new JexlConditionLanguage(compileConditions));
+        register(new NativeConditionLanguage());
+        additionalLanguages.forEach(this::register);
+    }
+
+    private void register(ConditionLanguage language) {
+        languages.put(language.getName(), language);
+    }
+
+    public CompiledCondition compile(String expression) {
+        return compile(null, expression);
+    }
+
+    /**
+     * Compiles a condition written in the named language, or in JEXL if the language is {@code null}.
+     * An unknown language gives an invalid condition.
+     */
+    public CompiledCondition compile(String language, String expression) {
         if (expression == null || expression.isEmpty()) {
-            return true;
+            return CompiledCondition.NONE;
         }
+        return cache.get(new Key(language != null ? language : JexlConditionLanguage.NAME, expression),
+                this::parse);
+    }
+
+    public boolean evaluate(String expression, Map<String, Object> context) {
+        return evaluate(compile(expression), context);
+    }
+
+    public boolean evaluate(CompiledCondition condition, Map<String, Object> context) {
+        return evaluate(condition, new MapContext(context));
+    }
+
+    public boolean evaluate(CompiledCondition condition, JexlContext context) {
+        return check(condition, context).isTrue();
+    }
+
+    /**
+     * Evaluates the condition. An invalid condition, or one that fails on the request, gives
+     * {@link ConditionResult#ERROR}, which is counted on the condition.
+     */
+    public ConditionResult check(CompiledCondition condition, JexlContext context) {
+        if (condition.isEmpty()) {
+            return ConditionResult.TRUE;
+        }
+        ConditionResult result = ConditionResult.ERROR;
+        if (condition.isValid()) {
+            ConditionRequest request = context instanceof ConditionRequest conditionRequest
+                    ? conditionRequest
+                    : new ContextRequest(context);
+            try {
+                result = condition.getCondition().evaluate(request);
+            } catch (RuntimeException e) {
+                // a language that throws despite its contract
+            }
+        }
+        if (result != ConditionResult.TRUE && result != ConditionResult.FALSE) {
+            condition.recordError();
+            return ConditionResult.ERROR;
+        }
+        return result;
+    }
+
+    public CacheStats getCacheStats() {
+        return cache.stats();
+    }
+
+    /**
+     * Returns the cached conditions whose evaluation ended in {@link ConditionResult#ERROR} at least
+     * once, those with the most errors first.
+     */
+    public List<CompiledCondition> getFailingConditions() {
+        List<CompiledCondition> failing = new ArrayList<>();
+        cache.forEach((key, condition) -> {
+            if (condition.getErrorCount() > 0) {
+                failing.add(condition);
+            }
+        });
+        failing.sort(Comparator.comparingLong(CompiledCondition::getErrorCount).reversed());
+        return failing;
+    }
+
+    private CompiledCondition parse(Key key) {
+        ConditionLanguage language = languages.get(key.getLanguage());
+        if (language == null) {
+            return new CompiledCondition(key.getSource(), key.getLanguage(), null, ConditionDependencies.NONE,
+                    new IllegalArgumentException("Unknown condition language: " + key.getLanguage()));
+        }
+        ConditionLanguage.Condition condition;
         try {
-            JexlContext jexlContext = new MapContext(context);
-            Object result = JEXL.createExpression(expression).evaluate(jexlContext);
-            return Boolean.TRUE.equals(result);
+            condition = language.parse(key.getSource());
         } catch (Exception e) {
-            return false;
+            return new CompiledCondition(key.getSource(), key.getLanguage(), null, ConditionDependencies.NONE, e);
+        }
+        return new CompiledCondition(key.getSource(), key.getLanguage(), condition, condition.getDependencies(),
+                null);
+    }
+
+    @Value
+    private static class Key {
+        String language;
+        String source;
+    }
+
+    /**
+     * Reads the request from the variables of a plain JEXL context, which JEXL conditions keep
+     * evaluating against directly.
+     */
+    private static final class ContextRequest implements ConditionRequest, JexlContext {
+        private final JexlContext context;
+
+        private ContextRequest(JexlContext context) {
+            this.context = context;
+        }
+
+        @Override
+        public Principal getPrincipal() {
+            return context.get("principal") instanceof Principal principal ? principal : null;
+        }
+
+        @Override
+        public Resource getResource() {
+            return context.get("resource") instanceof Resource resource ? resource : null;
+        }
+
+        @Override
+        public String getAction() {
+            return context.get("action") instanceof String action ? action : null;
+        }
+
+        @Override
+        public Object getContext() {
+            return context.get("context");
+        }
+
+        @Override
+        public Object get(String name) {
+            return context.get(name);
+        }
+
+        @Override
+        public void set(String name, Object value) {
+            context.set(name, value);
+        }
+
+        @Override
+        public boolean has(String name) {
+            return context.has(name);
         }
     }
 }
@@ -0,0 +1,34 @@
+package org.authzen;
+
+/**
+ * A language statement conditions can be written in. A statement selects it by name through
+ * {@link Statement#getConditionLanguage()}; statements without one use JEXL.
+ */
+public interface ConditionLanguage {
+    String getName();
+
+    /**
+     * Parses a condition once so that it can be evaluated many times.
+     *
+     * @throws IllegalArgumentException if the condition is invalid
+     */
+    Condition parse(String source);
+
+    /**
+     * A parsed condition. Implementations must be thread-safe.
+     */
+    interface Condition {
+        /**
+         * Evaluates the condition. A condition that fails on the request reports
+         * {@link ConditionResult#ERROR} rather than throwing.
+         */
+        ConditionResult evaluate(ConditionRequest request);
+
+        /**
+         * Returns what the condition reads; by default, possibly anything, in a non-deterministic way.
+         */
+        default ConditionDependencies getDependencies() {
+            return ConditionDependencies.UNKNOWN;
+        }
+    }
+}
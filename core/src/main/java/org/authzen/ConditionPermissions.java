@@ -0,0 +1,84 @@
+package org.authzen;
+
+import org.apache.commons.jexl3.introspection.JexlPermissions;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+
+/**
+ * The JEXL permissions of conditions. On top of the JDK types JEXL's
+ * {@linkplain JexlPermissions#RESTRICTED restricted} permissions allow, conditions may read the
+ * properties of principals, roles and resources, including subclasses outside this package, through
+ * their public getters, and the attributes of {@link Attributed} values. They cannot call other
+ * methods of those types, and they cannot construct objects.
+ */
+final class ConditionPermissions implements JexlPermissions {
+    static final ConditionPermissions INSTANCE = new ConditionPermissions(JexlPermissions.RESTRICTED);
+
+    private final JexlPermissions base;
+
+    private ConditionPermissions(JexlPermissions base) {
+        this.base = base;
+    }
+
+    static boolean isDomainType(Class<?> type) {
+        return Principal.class.isAssignableFrom(type) || Role.class.isAssignableFrom(type) ||
+               Resource.class.isAssignableFrom(type) || Attributed.class.isAssignableFrom(type);
+    }
+
+    /** Whether the method is a public getter, such as {@code getDepartment()} or {@code isActive()}. */
+    static boolean isGetter(Method method) {
+        if (!Modifier.isPublic(method.getModifiers()) || Modifier.isStatic(method.getModifiers()) ||
+            method.getParameterCount() != 0 || method.getReturnType() == void.class ||
+            method.getDeclaringClass() == Object.class) {
+            return false;
+        }
+        String name = method.getName();
+        return name.length() > 3 && name.startsWith("get") ||
+               name.length() > 2 && name.startsWith("is") &&
+               (method.getReturnType() == boolean.class || method.getReturnType() == Boolean.class);
+    }
+
+    private static boolean isAttributeGetter(Method method) {
+        return Attributed.class.isAssignableFrom(method.getDeclaringClass()) &&
+               method.getName().equals("getAttribute") &&
+               method.getParameterCount() == 1 && method.getParameterTypes()[0] == String.class;
+    }
+
+    @Override
+    public boolean allow(Package pack) {
+        return base.allow(pack);
+    }
+
+    @Override
+    public boolean allow(Class<?> clazz) {
+        return clazz != null && (isDomainType(clazz) || base.allow(clazz));
+    }
+
+    @Override
+    public boolean allow(Constructor<?> ctor) {
+        return false;
+    }
+
+    @Override
+    public boolean allow(Field field) {
+        return field != null && !isDomainType(field.getDeclaringClass()) && base.allow(field);
+    }
+
+    @Override
+    public boolean allow(Method method) {
+        if (method == null) {
+            return false;
+        }
+        if (isDomainType(method.getDeclaringClass())) {
+            return isGetter(method) || isAttributeGetter(method);
+        }
+        return base.allow(method);
+    }
+
+    @Override
+    public JexlPermissions compose(String... src) {
+        return new ConditionPermissions(base.compose(src));
+    }
+}
@@ -0,0 +1,14 @@
+package org.authzen;
+
+/**
+ * The inputs a condition is evaluated against.
+ */
+public interface ConditionRequest {
+    Principal getPrincipal();
+
+    Resource getResource();
+
+    String getAction();
+
+    Object getContext();
+}
@@ -0,0 +1,19 @@
+package org.authzen;
+
+/**
+ * The outcome of evaluating a condition. A condition that could not be evaluated, because it is
+ * invalid or failed on the request, is an {@link #ERROR} and does not hold.
+ */
+public enum ConditionResult {
+    TRUE,
+    FALSE,
+    ERROR;
+
+    public static ConditionResult of(boolean holds) {
+        return holds ? TRUE : FALSE;
+    }
+
+    public boolean isTrue() {
+        return this == TRUE;
+    }
+}
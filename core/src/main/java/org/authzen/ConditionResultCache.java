@@ -0,0 +1,82 @@
+package org.authzen;
+
+import lombok.EqualsAndHashCode;
+
+/**
+ * Memoizes the results of conditions that read only the principal or only the resource, keyed by the
+ * condition and the ID and {@linkplain Versioned version} of that entity. Results are only kept for
+ * entities that implement {@link Versioned}, since the attributes of others may change unnoticed.
+ */
+public class ConditionResultCache {
+    public static final int DEFAULT_CACHE_SIZE = 10_000;
+
+    private final BoundedCache<Key, Boolean> cache;
+
+    public ConditionResultCache() {
+        this(DEFAULT_CACHE_SIZE);
+    }
+
+    public ConditionResultCache(int maximumCacheSize) {
+        this.cache = new BoundedCache<>(maximumCacheSize);
+    }
+
+    boolean evaluate(CompiledCondition condition, EvaluationContext request, ConditionEvaluator evaluator) {
+        Key key = keyOf(condition, request);
+        if (key == null) {
+            return evaluator.evaluate(condition, request);
+        }
+        Boolean result = cache.getIfPresent(key);
+        if (result == null) {
+            result = evaluator.evaluate(condition, request);
+            cache.put(key, result);
+        }
+        return result;
+    }
+
+    public void invalidatePrincipal(String principalId) {
+        cache.removeIf((key, result) -> key.principal && key.entityId.equals(principalId));
+    }
+
+    public void invalidateResource(String resourceId) {
+        cache.removeIf((key, result) -> !key.principal && key.entityId.equals(resourceId));
+    }
+
+    public void invalidateAll() {
+        cache.clear();
+    }
+
+    public CacheStats getCacheStats() {
+        return cache.stats();
+    }
+
+    private static Key keyOf(CompiledCondition condition, EvaluationContext request) {
+        ConditionDependencies dependencies = condition.getDependencies();
+        if (dependencies.isPrincipalOnly() && request.getPrincipal() instanceof Versioned versioned) {
+            return new Key(condition, true, String.valueOf(request.getPrincipal().getId()), null,
+                    versioned.getVersion());
+        }
+        if (dependencies.isResourceOnly() && request.getResource() instanceof Versioned versioned) {
+            return new Key(condition, false, String.valueOf(request.getResource().getId()),
+                    request.getResource().getType(), versioned.getVersion());
+        }
+        return null;
+    }
+
+    @EqualsAndHashCode
+    private static final class Key {
+        /** Compared by identity: compiled conditions are shared per distinct condition text. */
+        private final CompiledCondition condition;
+        private final boolean principal;
+        private final String entityId;
+        private final String type;
+        private final long version;
+
+        private Key(CompiledCondition condition, boolean principal, String entityId, String type, long version) {
+            this.condition = condition;
+            this.principal = principal;
+            this.entityId = entityId;
+            this.type = type;
+            this.version = version;
+        }
+    }
+}
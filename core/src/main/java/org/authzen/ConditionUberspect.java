@@ -0,0 +1,245 @@
+package org.authzen;
+
+import org.apache.commons.jexl3.JexlArithmetic;
+import org.apache.commons.jexl3.JexlBuilder;
+import org.apache.commons.jexl3.JexlEngine;
+import org.apache.commons.jexl3.JexlException;
+import org.apache.commons.jexl3.JexlOperator;
+import org.apache.commons.jexl3.introspection.JexlMethod;
+import org.apache.commons.jexl3.introspection.JexlPropertyGet;
+import org.apache.commons.jexl3.introspection.JexlPropertySet;
+import org.apache.commons.jexl3.introspection.JexlUberspect;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * The JEXL introspection of conditions. Properties of principals, roles and resources are read
+ * through {@link MethodHandle}s to their getters, resolved once per class and property; the
+ * attributes of {@link Attributed} values without a getter of that name are read through
+ * {@link Attributed#getAttribute(String)}. Everything else is introspected by JEXL under
+ * {@link ConditionPermissions}.
+ */
+final class ConditionUberspect implements JexlUberspect {
+    private static final MethodType GETTER_TYPE = MethodType.methodType(Object.class, Object.class);
+    private static final MethodHandle ATTRIBUTE_GETTER;
+
+    static {
+        try {
+            ATTRIBUTE_GETTER = MethodHandles.publicLookup().findVirtual(Attributed.class, "getAttribute",
+                    MethodType.methodType(Object.class, String.class));
+        } catch (ReflectiveOperationException e) {
+            throw new ExceptionInInitializerError(e);
+        }
+    }
+
+    private final JexlUberspect delegate;
+    private final ClassValue<Map<String, Accessor>> accessors = new ClassValue<>() {
+        @Override
+        protected Map<String, Accessor> computeValue(Class<?> type) {
+            return new ConcurrentHashMap<>();
+        }
+    };
+
+    ConditionUberspect() {
+        JexlEngine introspection = new JexlBuilder().permissions(ConditionPermissions.INSTANCE).create();
+        this.delegate = introspection.getUberspect();
+    }
+
+    @Override
+    public JexlPropertyGet getPropertyGet(Object obj, Object identifier) {
+        return getPropertyGet(null, obj, identifier);
+    }
+
+    @Override
+    public JexlPropertyGet getPropertyGet(List<PropertyResolver> resolvers, Object obj, Object identifier) {
+        if (obj != null && identifier instanceof String property && !(obj instanceof Map) &&
+            (resolvers == null || !resolvers.isEmpty() && resolvers.get(0) == JexlResolver.PROPERTY) &&
+            ConditionPermissions.isDomainType(obj.getClass())) {
+            Accessor accessor = accessor(obj.getClass(), property);
+            if (accessor != null) {
+                return accessor;
+            }
+        }
+        return delegate.getPropertyGet(resolvers, obj, identifier);
+    }
+
+    /** Returns the cached accessor of the property, or {@code null} if JEXL should resolve it. */
+    private Accessor accessor(Class<?> type, String property) {
+        Map<String, Accessor> byProperty = accessors.get(type);
+        Accessor accessor = byProperty.get(property);
+        if (accessor == null) {
+            accessor = resolve(type, property);
+            if (accessor != null) {
+                byProperty.putIfAbsent(property, accessor);
+            }
+        }
+        return accessor;
+    }
+
+    private static Accessor resolve(Class<?> type, String property) {
+        if (property.isEmpty()) {
+            return null;
+        }
+        Method getter = getter(type, "get", property);
+        if (getter == null) {
+            getter = getter(type, "is", property);
+        }
+        try {
+            if (getter != null) {
+                return new Accessor(type, property, MethodHandles.publicLookup().unreflect(getter).asType(GETTER_TYPE));
+            }
+        } catch (IllegalAccessException e) {
+            // declared by a class that is not public; JEXL looks for an accessible declaration
+            return null;
+        }
+        if (Attributed.class.isAssignableFrom(type)) {
+            return new Accessor(type, property,
+                    MethodHandles.insertArguments(ATTRIBUTE_GETTER, 1, property).asType(GETTER_TYPE));
+        }
+        return null;
+    }
+
+    /** Looks the getter up the way JEXL does: capitalized first, then as written. */
+    private static Method getter(Class<?> type, String prefix, String property) {
+        String capitalized = Character.toUpperCase(property.charAt(0)) + property.substring(1);
+        Method getter = publicGetter(type, prefix + capitalized);
+        if (getter == null && !capitalized.equals(property)) {
+            getter = publicGetter(type, prefix + property);
+        }
+        return getter;
+    }
+
+    private static Method publicGetter(Class<?> type, String name) {
+        try {
+            Method method = type.getMethod(name);
+            return ConditionPermissions.INSTANCE.allow(method) ? method : null;
+        } catch (NoSuchMethodException e) {
+            return null;
+        }
+    }
+
+    private static final class Accessor implements JexlPropertyGet {
+        private final Class<?> type;
+        private final String property;
+        private final MethodHandle getter;
+
+        private Accessor(Class<?> type, String property, MethodHandle getter) {
+            this.type = type;
+            this.property = property;
+            this.getter = getter;
+        }
+
+        @Override
+        public Object invoke(Object obj) throws Exception {
+            try {
+                return (Object) getter.invokeExact(obj);
+            } catch (Exception | Error e) {
+                throw e;
+            } catch (Throwable t) {
+                throw new GetterFailure(t);
+            }
+        }
+
+        @Override
+        public Object tryInvoke(Object obj, Object key) {
+            if (obj == null || obj.getClass() != type || !property.equals(key)) {
+                return JexlEngine.TRY_FAILED;
+            }
+            try {
+                return invoke(obj);
+            } catch (Exception e) {
+                throw JexlException.tryFailed(new GetterFailure(e));
+            }
+        }
+
+        @Override
+        public boolean tryFailed(Object rval) {
+            return rval == JexlEngine.TRY_FAILED;
+        }
+
+        @Override
+        public boolean isCacheable() {
+            return true;
+        }
+    }
+
+    /** The cause JEXL requires to report a failing getter, without a stack trace of its own. */
+    private static final class GetterFailure extends InvocationTargetException {
+        private GetterFailure(Throwable target) {
+            super(target);
+        }
+
+        @Override
+        public synchronized Throwable fillInStackTrace() {
+            return this;
+        }
+    }
+
+    @Override
+    public List<PropertyResolver> getResolvers(JexlOperator op, Object obj) {
+        return delegate.getResolvers(op, obj);
+    }
+
+    @Override
+    public JexlPropertySet getPropertySet(Object obj, Object identifier, Object arg) {
+        return delegate.getPropertySet(obj, identifier, arg);
+    }
+
+    @Override
+    public JexlPropertySet getPropertySet(List<PropertyResolver> resolvers, Object obj, Object identifier,
+                                          Object arg) {
+        return delegate.getPropertySet(resolvers, obj, identifier, arg);
+    }
+
+    @Override
+    public JexlMethod getMethod(Object obj, String method, Object... args) {
+        return delegate.getMethod(obj, method, args);
+    }
+
+    @Override
+    public JexlMethod getConstructor(Object ctorHandle, Object... args) {
+        return delegate.getConstructor(ctorHandle, args);
+    }
+
+    @Override
+    public Iterator<?> getIterator(Object obj) {
+        return delegate.getIterator(obj);
+    }
+
+    @Override
+    public JexlArithmetic.Uberspect getArithmetic(JexlArithmetic arithmetic) {
+        return delegate.getArithmetic(arithmetic);
+    }
+
+    @Override
+    public JexlOperator.Uberspect getOperator(JexlArithmetic arithmetic) {
+        return delegate.getOperator(arithmetic);
+    }
+
+    @Override
+    public Class<?> getClassByName(String className) {
+        return delegate.getClassByName(className);
+    }
+
+    @Override
+    public ClassLoader getClassLoader() {
+        return delegate.getClassLoader();
+    }
+
+    @Override
+    public void setClassLoader(ClassLoader loader) {
+        delegate.setClassLoader(loader);
+    }
+
+    @Override
+    public int getVersion() {
+        return delegate.getVersion();
+    }
+}
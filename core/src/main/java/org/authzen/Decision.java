@@ -5,6 +5,13 @@ import java.util.List;
 
 @Value
 public class Decision {
+    public static final Decision ALLOWED =
+            new Decision(true, "Both identity and resource policies allow", List.of());
+    public static final Decision EXPLICIT_DENY =
+            new Decision(false, "Explicit deny", List.of());
+    public static final Decision NO_MATCHING_ALLOW =
+            new Decision(false, "No matching allow policies from both identity and resource", List.of());
+
     boolean allowed;
     String reason;
     List<Statement> matchedStatements;
@@ -0,0 +1,208 @@
+package org.authzen;
+
+import lombok.EqualsAndHashCode;
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.LongSupplier;
+
+/**
+ * Caches authorization decisions for a bounded time, keyed by the principal (its ID, policies, roles
+ * and {@linkplain Versioned version}), the resource (its ID, type, policy and version), the action,
+ * the evaluation mode and the context values the evaluated conditions read.
+ * <p>
+ * The context paths the conditions read are remembered per request without its context, and a request
+ * is looked up by the values at those paths, so requests that only differ in context values no condition
+ * reads share their decision. Paths are read through {@link Map}s by property name, which is how
+ * conditions read them; a path reaching any other value, or a segment that may stand for an index or
+ * a key other than a string, such as {@code 0} in {@code context.items[0]}, is keyed by the whole value
+ * it was read from.
+ * <p>
+ * Whether a decision is cached depends on the {@link ConditionDependencies} of the conditions it
+ * evaluated: principal and resource attributes beyond their IDs and types are only part of the key
+ * through versions, so a decision whose conditions read them is cached only if that entity is
+ * {@link Versioned}, and a decision that evaluated a non-deterministic condition is never cached.
+ * Context values are compared with {@code equals} and must not be mutated after a request.
+ */
+public class DecisionCache {
+    public static final int DEFAULT_CACHE_SIZE = 10_000;
+    public static final Duration DEFAULT_TTL = Duration.ofSeconds(30);
+
+    private final BoundedCache<Key, Entry> cache;
+    private final BoundedCache<RequestKey, Set<List<String>>> contextPaths;
+    private final long ttlNanos;
+    private final LongSupplier ticker;
+
+    public DecisionCache() {
+        this(DEFAULT_CACHE_SIZE, DEFAULT_TTL);
+    }
+
+    public DecisionCache(int maximumCacheSize, Duration ttl) {
+        this(maximumCacheSize, ttl, System::nanoTime);
+    }
+
+    DecisionCache(int maximumCacheSize, Duration ttl, LongSupplier ticker) {
+        if (ttl.isNegative()) {
+            throw new IllegalArgumentException("TTL cannot be negative");
+        }
+        this.cache = new BoundedCache<>(maximumCacheSize);
+        this.contextPaths = new BoundedCache<>(maximumCacheSize);
+        this.ttlNanos = ttl.toNanos();
+        this.ticker = ticker;
+    }
+
+    Decision evaluate(AuthorizationEngine engine, Principal principal, Resource resource, String action,
+                      Object context, EvaluationMode mode) {
+        return evaluate(engine, principal, null, resource, action, context, mode);
+    }
+
+    /**
+     * Evaluates for a principal prepared once for many resources, such as by {@link AuthZen#authorizeAll}.
+     */
+    Decision evaluate(AuthorizationEngine engine, PreparedPrincipal prepared, Resource resource, String action,
+                      Object context, EvaluationMode mode) {
+        return evaluate(engine, prepared.getPrincipal(), prepared, resource, action, context, mode);
+    }
+
+    private Decision evaluate(AuthorizationEngine engine, Principal principal, PreparedPrincipal prepared,
+                              Resource resource, String action, Object context, EvaluationMode mode) {
+        RequestKey requestKey = new RequestKey(principal, resource, action, mode);
+        Set<List<String>> paths = contextPaths.getIfPresent(requestKey);
+        if (paths == null) {
+            // a decision that read no context is valid for any context
+            paths = Set.of();
+        }
+        long now = ticker.getAsLong();
+        Entry cached = cache.getIfPresent(new Key(requestKey, valuesAt(context, paths)),
+                entry -> now - entry.expiresAt < 0);
+        if (cached != null) {
+            return cached.decision;
+        }
+        EvaluationContext request = prepared != null
+                ? new EvaluationContext(prepared, resource, action, context)
+                : new EvaluationContext(principal, resource, action, context);
+        Decision decision = engine.evaluate(request, mode);
+        if (isCacheable(request)) {
+            if (!paths.containsAll(request.getContextPaths())) {
+                // kept growing, so that requests keep finding the decisions cached for fewer paths
+                Set<List<String>> union = new HashSet<>(paths);
+                union.addAll(request.getContextPaths());
+                paths = Set.copyOf(union);
+                contextPaths.put(requestKey, paths);
+            }
+            cache.put(new Key(requestKey, valuesAt(context, paths)), new Entry(decision, now + ttlNanos));
+        }
+        return decision;
+    }
+
+    /**
+     * Returns the value at each path, reading through maps by property name and stopping at any other
+     * value or segment.
+     */
+    private static Map<List<String>, Object> valuesAt(Object context, Set<List<String>> paths) {
+        Map<List<String>, Object> values = new HashMap<>(paths.size() * 2);
+        for (List<String> path : paths) {
+            Object value = context;
+            for (int i = 1; i < path.size() && value instanceof Map<?, ?> map && isPropertyName(path.get(i)); i++) {
+                value = map.get(path.get(i));
+            }
+            values.put(path, value);
+        }
+        return values;
+    }
+
+    /**
+     * Returns whether the path segment can only have been read as a property name. Indexes and quoted
+     * keys are reported as plain segments too, so {@code context[1]} may read the key {@code 1} or
+     * {@code "1"}.
+     */
+    private static boolean isPropertyName(String segment) {
+        if (segment.isEmpty() || !Character.isJavaIdentifierStart(segment.charAt(0))) {
+            return false;
+        }
+        for (int i = 1; i < segment.length(); i++) {
+            if (!Character.isJavaIdentifierPart(segment.charAt(i))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean isCacheable(EvaluationContext request) {
+        return !request.isNondeterministic() &&
+               (!request.isPrincipalAttributesRead() || request.getPrincipal() instanceof Versioned) &&
+               (!request.isResourceAttributesRead() || request.getResource() instanceof Versioned);
+    }
+
+    public void invalidatePrincipal(String principalId) {
+        cache.removeIf((key, entry) -> key.request.principalId.equals(principalId));
+    }
+
+    public void invalidateRole(String roleId) {
+        cache.removeIf((key, entry) -> key.request.principalFingerprint.hasRole(roleId));
+    }
+
+    public void invalidateResource(String resourceId) {
+        cache.removeIf((key, entry) -> key.request.resourceId.equals(resourceId));
+    }
+
+    public void invalidateAll() {
+        cache.clear();
+        contextPaths.clear();
+    }
+
+    public CacheStats getCacheStats() {
+        return cache.stats();
+    }
+
+    private static final class Entry {
+        private final Decision decision;
+        private final long expiresAt;
+
+        private Entry(Decision decision, long expiresAt) {
+            this.decision = decision;
+            this.expiresAt = expiresAt;
+        }
+    }
+
+    @EqualsAndHashCode
+    private static final class Key {
+        private final RequestKey request;
+        /** The values at the context paths read for the request. */
+        private final Map<List<String>, Object> contextValues;
+
+        private Key(RequestKey request, Map<List<String>, Object> contextValues) {
+            this.request = request;
+            this.contextValues = contextValues;
+        }
+    }
+
+    /** A request without its context. */
+    @EqualsAndHashCode
+    private static final class RequestKey {
+        private final String principalId;
+        private final EffectivePrincipalPolicy.Fingerprint principalFingerprint;
+        private final Long principalVersion;
+        private final String resourceId;
+        private final String resourceType;
+        private final Policy resourcePolicy;
+        private final Long resourceVersion;
+        private final String action;
+        private final EvaluationMode mode;
+
+        private RequestKey(Principal principal, Resource resource, String action, EvaluationMode mode) {
+            this.principalId = String.valueOf(principal.getId());
+            this.principalFingerprint = new EffectivePrincipalPolicy.Fingerprint(principal);
+            this.principalVersion = principal instanceof Versioned versioned ? versioned.getVersion() : null;
+            this.resourceId = String.valueOf(resource.getId());
+            this.resourceType = resource.getType();
+            this.resourcePolicy = resource.getPolicy();
+            this.resourceVersion = resource instanceof Versioned versioned ? versioned.getVersion() : null;
+            this.action = action;
+            this.mode = mode;
+        }
+    }
+}
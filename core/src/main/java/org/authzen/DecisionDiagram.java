@@ -0,0 +1,424 @@
+package org.authzen;
+
+import lombok.EqualsAndHashCode;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.BiPredicate;
+
+/**
+ * The statements of one policy compiled into a reduced, ordered decision diagram with three outcomes:
+ * explicit deny, allowed, and no matching allow. Each node tests one predicate: the action patterns,
+ * the principal patterns or the resource patterns shared by every statement that has them, or the
+ * condition of a single statement. Predicates are ordered as they first appear in the statements, so
+ * each condition comes after all the patterns of its statement and is only evaluated once they match
+ * and the outcome depends on it. A walk from the root to an outcome tests each predicate at most once
+ * and applies the deny-overrides rule: {@link AuthorizationEngine} walks the diagrams of the identity
+ * and the resource policy, each compiled once per {@link CompiledPolicy}, and combines their outcomes.
+ * <p>
+ * Diagrams that would exceed {@link #MAX_NODES} nodes are not built; {@link #compile} returns
+ * {@link #TOO_LARGE} instead.
+ */
+public final class DecisionDiagram {
+    public static final int MAX_NODES = 100_000;
+
+    private static final int FALSE = -1;
+    private static final int TRUE = -2;
+    private static final int EXPLICIT_DENY = -3;
+    private static final int ALLOWED = -4;
+    private static final int NO_MATCHING_ALLOW = -5;
+
+    /** Stands for a diagram that was not built because it would be too large. */
+    public static final DecisionDiagram TOO_LARGE = new DecisionDiagram(List.of(), new int[0], new int[0],
+            new int[0], NO_MATCHING_ALLOW);
+
+    private final List<Predicate> predicates;
+    private final int[] variables;
+    private final int[] lows;
+    private final int[] highs;
+    private final int root;
+
+    private DecisionDiagram(List<Predicate> predicates, int[] variables, int[] lows, int[] highs, int root) {
+        this.predicates = predicates;
+        this.variables = variables;
+        this.lows = lows;
+        this.highs = highs;
+        this.root = root;
+    }
+
+    public static DecisionDiagram compile(CompiledPolicy policy, boolean isIdentityPolicy) {
+        try {
+            return new Builder(policy.getStatements(), isIdentityPolicy).build();
+        } catch (TooLargeException e) {
+            return TOO_LARGE;
+        }
+    }
+
+    public int getNodeCount() {
+        return variables.length;
+    }
+
+    public int getPredicateCount() {
+        return predicates.size();
+    }
+
+    /**
+     * Walks the diagram for the request, evaluating conditions through {@code conditions}. Returns
+     * {@link Decision#ALLOWED} if an allow statement of the policy matches and no deny statement does.
+     */
+    Decision evaluate(EvaluationContext request, BiPredicate<CompiledStatement, EvaluationContext> conditions) {
+        int node = root;
+        while (node >= 0) {
+            node = predicates.get(variables[node]).test(request, conditions) ? highs[node] : lows[node];
+        }
+        switch (node) {
+            case EXPLICIT_DENY:
+                return Decision.EXPLICIT_DENY;
+            case ALLOWED:
+                return Decision.ALLOWED;
+            default:
+                return Decision.NO_MATCHING_ALLOW;
+        }
+    }
+
+    private enum Kind {
+        ACTION,
+        PRINCIPAL,
+        RESOURCE,
+        CONDITION
+    }
+
+    /**
+     * A test shared by the statements with the same patterns of its kind, evaluated through the first
+     * of them, or the condition of one statement.
+     */
+    private static final class Predicate {
+        private final Kind kind;
+        private final CompiledStatement statement;
+        private final boolean isIdentityPolicy;
+
+        private Predicate(Kind kind, CompiledStatement statement, boolean isIdentityPolicy) {
+            this.kind = kind;
+            this.statement = statement;
+            this.isIdentityPolicy = isIdentityPolicy;
+        }
+
+        boolean test(EvaluationContext request, BiPredicate<CompiledStatement, EvaluationContext> conditions) {
+            switch (kind) {
+                case ACTION:
+                    return request.matchesAction(statement);
+                case PRINCIPAL:
+                    return statement.appliesTo(request.getIdentity(), isIdentityPolicy);
+                case RESOURCE:
+                    return statement.matchesResource(request.getResource().getId());
+                default:
+                    return conditions.test(statement, request);
+            }
+        }
+    }
+
+    @EqualsAndHashCode
+    private static final class PredicateKey {
+        private final Kind kind;
+        private final Object value;
+
+        private PredicateKey(Kind kind, Object value) {
+            this.kind = kind;
+            this.value = value;
+        }
+    }
+
+    @EqualsAndHashCode
+    private static final class NodeKey {
+        private final int variable;
+        private final int low;
+        private final int high;
+
+        private NodeKey(int variable, int low, int high) {
+            this.variable = variable;
+            this.low = low;
+            this.high = high;
+        }
+    }
+
+    @EqualsAndHashCode
+    private static final class PairKey {
+        private final int operation;
+        private final int first;
+        private final int second;
+
+        private PairKey(int operation, int first, int second) {
+            this.operation = operation;
+            this.first = first;
+            this.second = second;
+        }
+    }
+
+    private static final class TooLargeException extends Exception {
+        private TooLargeException() {
+            super(null, null, false, false);
+        }
+    }
+
+    private static final class Builder {
+        private static final int AND = 0;
+        private static final int OR = 1;
+        private static final int COMBINE = 2;
+        private static final int OUTCOME = 3;
+
+        /** Bounds the nodes of the intermediate diagrams between two garbage collections. */
+        private static final int MAX_WORKING_NODES = 4 * MAX_NODES;
+
+        private final List<CompiledStatement> statements;
+        private final boolean isIdentityPolicy;
+        private final Map<PredicateKey, Predicate> predicatesByKey = new LinkedHashMap<>();
+        private final Map<PredicateKey, Integer> variablesByKey = new HashMap<>();
+        private final List<int[]> nodes = new ArrayList<>();
+        private final Map<NodeKey, Integer> uniqueNodes = new HashMap<>();
+        private final Map<PairKey, Integer> computed = new HashMap<>();
+        /** The node count at which garbage is next collected. */
+        private int collectAt = MAX_NODES;
+
+        private Builder(List<CompiledStatement> statements, boolean isIdentityPolicy) {
+            this.statements = statements;
+            this.isIdentityPolicy = isIdentityPolicy;
+        }
+
+        DecisionDiagram build() throws TooLargeException {
+            for (CompiledStatement statement : statements) {
+                for (PredicateKey key : keysOf(statement)) {
+                    Kind kind = key.kind;
+                    predicatesByKey.computeIfAbsent(key, k -> new Predicate(kind, statement, isIdentityPolicy));
+                }
+            }
+            // in order of first appearance: grouping the predicates by kind instead makes the diagram
+            // grow exponentially with the number of statements
+            List<Predicate> predicates = new ArrayList<>(predicatesByKey.size());
+            for (PredicateKey key : predicatesByKey.keySet()) {
+                variablesByKey.put(key, predicates.size());
+                predicates.add(predicatesByKey.get(key));
+            }
+
+            Deque<Integer> denies = new ArrayDeque<>();
+            Deque<Integer> allows = new ArrayDeque<>();
+            for (CompiledStatement statement : statements) {
+                (statement.getEffect() == Effect.DENY ? denies : allows).add(conjunction(statement));
+            }
+            disjunction(denies, allows);
+            int allow = disjunction(allows, denies);
+            // renumbered in place by the garbage collections while folding the allows
+            int deny = denies.isEmpty() ? FALSE : denies.getFirst();
+            DecisionDiagram diagram = compact(predicates, combine(deny, allow));
+            if (diagram.getNodeCount() > MAX_NODES) {
+                throw new TooLargeException();
+            }
+            return diagram;
+        }
+
+        /**
+         * Folds the terms pairwise as a balanced tree into their disjunction, left as the only term, and
+         * returns it: folding them one by one makes each step as large as the diagram built so far. The
+         * other terms survive the garbage collections done while folding.
+         */
+        private int disjunction(Deque<Integer> terms, Deque<Integer> otherTerms) throws TooLargeException {
+            if (terms.isEmpty()) {
+                return FALSE;
+            }
+            while (terms.size() > 1) {
+                terms.addLast(apply(OR, terms.pollFirst(), terms.pollFirst()));
+                if (nodes.size() >= collectAt) {
+                    collectGarbage(terms, otherTerms);
+                }
+            }
+            return terms.getFirst();
+        }
+
+        /**
+         * Keeps only the nodes reachable from the terms, renumbering them in place, and forgets the computed
+         * results. Fails if the reachable nodes alone exceed the limit.
+         */
+        private void collectGarbage(Deque<Integer> terms, Deque<Integer> otherTerms) throws TooLargeException {
+            Map<Integer, Integer> renumbered = new HashMap<>();
+            List<int[]> reachable = new ArrayList<>();
+            for (Deque<Integer> roots : List.of(terms, otherTerms)) {
+                for (int i = roots.size(); i > 0; i--) {
+                    roots.addLast(renumber(roots.pollFirst(), renumbered, reachable));
+                }
+            }
+            if (reachable.size() > MAX_NODES) {
+                throw new TooLargeException();
+            }
+            nodes.clear();
+            nodes.addAll(reachable);
+            uniqueNodes.clear();
+            for (int i = 0; i < nodes.size(); i++) {
+                int[] node = nodes.get(i);
+                uniqueNodes.put(new NodeKey(node[0], node[1], node[2]), i);
+            }
+            computed.clear();
+            collectAt = Math.max(MAX_NODES, 2 * nodes.size());
+        }
+
+        private static List<PredicateKey> keysOf(CompiledStatement statement) {
+            List<PredicateKey> keys = new ArrayList<>(4);
+            keys.add(new PredicateKey(Kind.ACTION, statement.getActions()));
+            keys.add(new PredicateKey(Kind.PRINCIPAL,
+                    List.of(statement.getPrincipals(), statement.getNotPrincipals())));
+            keys.add(new PredicateKey(Kind.RESOURCE, statement.getResources()));
+            if (!statement.getCondition().isEmpty()) {
+                // one per statement, even for a condition shared by source: a shared one would be ordered
+                // before the patterns of the later statements, and evaluated when they do not match
+                keys.add(new PredicateKey(Kind.CONDITION, statement));
+            }
+            return keys;
+        }
+
+        /** Returns the diagram of the statement matching: all its predicates hold. */
+        private int conjunction(CompiledStatement statement) throws TooLargeException {
+            List<PredicateKey> keys = keysOf(statement);
+            int[] statementVariables = new int[keys.size()];
+            for (int i = 0; i < keys.size(); i++) {
+                statementVariables[i] = variablesByKey.get(keys.get(i));
+            }
+            Arrays.sort(statementVariables);
+            int node = TRUE;
+            for (int i = statementVariables.length - 1; i >= 0; i--) {
+                node = node(statementVariables[i], FALSE, node);
+            }
+            return node;
+        }
+
+        private int apply(int operation, int first, int second) throws TooLargeException {
+            int absorbing = operation == AND ? FALSE : TRUE;
+            int neutral = operation == AND ? TRUE : FALSE;
+            if (first == absorbing || second == absorbing) {
+                return absorbing;
+            }
+            if (first == neutral) {
+                return second;
+            }
+            if (second == neutral || first == second) {
+                return first;
+            }
+            PairKey key = new PairKey(operation, Math.min(first, second), Math.max(first, second));
+            Integer known = computed.get(key);
+            if (known != null) {
+                return known;
+            }
+            int variable = Math.min(variable(first), variable(second));
+            int result = node(variable,
+                    apply(operation, low(first, variable), low(second, variable)),
+                    apply(operation, high(first, variable), high(second, variable)));
+            computed.put(key, result);
+            return result;
+        }
+
+        /** Returns the outcome diagram: deny if {@code deny} holds, else allowed if {@code allow} holds. */
+        private int combine(int deny, int allow) throws TooLargeException {
+            if (deny == TRUE) {
+                return EXPLICIT_DENY;
+            }
+            if (deny == FALSE) {
+                return outcome(allow);
+            }
+            PairKey key = new PairKey(COMBINE, deny, allow);
+            Integer known = computed.get(key);
+            if (known != null) {
+                return known;
+            }
+            int variable = Math.min(variable(deny), variable(allow));
+            int result = node(variable,
+                    combine(low(deny, variable), low(allow, variable)),
+                    combine(high(deny, variable), high(allow, variable)));
+            computed.put(key, result);
+            return result;
+        }
+
+        private int outcome(int allow) throws TooLargeException {
+            if (allow == TRUE) {
+                return ALLOWED;
+            }
+            if (allow == FALSE) {
+                return NO_MATCHING_ALLOW;
+            }
+            PairKey key = new PairKey(OUTCOME, allow, allow);
+            Integer known = computed.get(key);
+            if (known != null) {
+                return known;
+            }
+            int[] node = nodes.get(allow);
+            int result = node(node[0], outcome(node[1]), outcome(node[2]));
+            computed.put(key, result);
+            return result;
+        }
+
+        private int node(int variable, int low, int high) throws TooLargeException {
+            if (low == high) {
+                return low;
+            }
+            NodeKey key = new NodeKey(variable, low, high);
+            Integer existing = uniqueNodes.get(key);
+            if (existing != null) {
+                return existing;
+            }
+            if (nodes.size() >= MAX_WORKING_NODES) {
+                throw new TooLargeException();
+            }
+            nodes.add(new int[] {variable, low, high});
+            uniqueNodes.put(key, nodes.size() - 1);
+            return nodes.size() - 1;
+        }
+
+        /** Returns the variable a node tests, terminals coming after every variable. */
+        private int variable(int node) {
+            return node < 0 ? Integer.MAX_VALUE : nodes.get(node)[0];
+        }
+
+        private int low(int node, int variable) {
+            return node >= 0 && nodes.get(node)[0] == variable ? nodes.get(node)[1] : node;
+        }
+
+        private int high(int node, int variable) {
+            return node >= 0 && nodes.get(node)[0] == variable ? nodes.get(node)[2] : node;
+        }
+
+        /** Copies the nodes reachable from the root, leaving out those of intermediate diagrams. */
+        private DecisionDiagram compact(List<Predicate> predicates, int root) {
+            Map<Integer, Integer> renumbered = new HashMap<>();
+            List<int[]> reachable = new ArrayList<>();
+            int newRoot = renumber(root, renumbered, reachable);
+            int[] variables = new int[reachable.size()];
+            int[] lows = new int[reachable.size()];
+            int[] highs = new int[reachable.size()];
+            for (int i = 0; i < reachable.size(); i++) {
+                variables[i] = reachable.get(i)[0];
+                lows[i] = reachable.get(i)[1];
+                highs[i] = reachable.get(i)[2];
+            }
+            return new DecisionDiagram(List.copyOf(predicates), variables, lows, highs, newRoot);
+        }
+
+        private int renumber(int node, Map<Integer, Integer> renumbered, List<int[]> reachable) {
+            if (node < 0) {
+                return node;
+            }
+            Integer known = renumbered.get(node);
+            if (known != null) {
+                return known;
+            }
+            int[] original = nodes.get(node);
+            int[] copy = new int[] {original[0], 0, 0};
+            int index = reachable.size();
+            reachable.add(copy);
+            renumbered.put(node, index);
+            copy[1] = renumber(original[1], renumbered, reachable);
+            copy[2] = renumber(original[2], renumbered, reachable);
+            return index;
+        }
+    }
+}
@@ -0,0 +1,51 @@
+package org.authzen;
+
+/**
+ * Caches the {@link EffectivePrincipalPolicy} of principals by principal ID. A cached policy is reused
+ * as long as the principal's policy and roles have the same fingerprint, and recomputed otherwise.
+ * The invalidation methods drop entries eagerly when a principal or role is known to have changed.
+ */
+public class EffectivePolicyCache {
+    public static final int DEFAULT_CACHE_SIZE = 10_000;
+
+    private final PolicyCompiler policyCompiler;
+    private final BoundedCache<String, EffectivePrincipalPolicy> cache;
+
+    public EffectivePolicyCache(PolicyCompiler policyCompiler) {
+        this(policyCompiler, DEFAULT_CACHE_SIZE);
+    }
+
+    public EffectivePolicyCache(PolicyCompiler policyCompiler, int maximumCacheSize) {
+        this.policyCompiler = policyCompiler;
+        this.cache = new BoundedCache<>(maximumCacheSize);
+    }
+
+    public EffectivePrincipalPolicy get(Principal principal) {
+        EffectivePrincipalPolicy.Fingerprint fingerprint = new EffectivePrincipalPolicy.Fingerprint(principal);
+        EffectivePrincipalPolicy cached = principal.getId() != null ? cache.getIfPresent(principal.getId()) : null;
+        if (cached != null && cached.getFingerprint().equals(fingerprint)) {
+            return cached;
+        }
+        EffectivePrincipalPolicy effective = EffectivePrincipalPolicy.compile(principal, fingerprint, policyCompiler);
+        if (principal.getId() != null) {
+            cache.put(principal.getId(), effective);
+        }
+        return effective;
+    }
+
+    public void invalidatePrincipal(String principalId) {
+        cache.remove(principalId);
+    }
+
+    public void invalidateRole(String roleId) {
+        cache.removeIf((principalId, effective) -> effective.getFingerprint().hasRole(roleId));
+    }
+
+    public void invalidateAll() {
+        cache.clear();
+    }
+
+    public CacheStats getCacheStats() {
+        return cache.stats();
+    }
+}
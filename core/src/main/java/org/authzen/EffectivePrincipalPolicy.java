@@ -0,0 +1,140 @@
+package org.authzen;
+
+import lombok.EqualsAndHashCode;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * The identity policy a principal is effectively granted: the statements of its own policy and of
+ * all its roles' policies, merged, deduplicated and compiled into a single indexed {@link CompiledPolicy}.
+ * It also holds the principal's identity and, per resource type and action, the statements whose action and
+ * principal patterns match. It is computed once and reused across requests while the principal's
+ * policy and roles keep the same {@linkplain #getFingerprint() fingerprint}.
+ */
+public final class EffectivePrincipalPolicy {
+    /** Bounds the number of resource type and action pairs whose applicable statements are kept. */
+    private static final int MAX_CACHED_ACTIONS = 1_024;
+
+    private final String principalId;
+    private final Fingerprint fingerprint;
+    private final CompiledPolicy policy;
+    private final PrincipalIdentity identity;
+    private final Map<String, Map<String, List<CompiledStatement>>> applicableStatements = new ConcurrentHashMap<>();
+    private final AtomicInteger cachedActions = new AtomicInteger();
+
+    private EffectivePrincipalPolicy(Principal principal, Fingerprint fingerprint, CompiledPolicy policy) {
+        this.principalId = principal.getId();
+        this.fingerprint = fingerprint;
+        this.policy = policy;
+        this.identity = new PrincipalIdentity(principal);
+    }
+
+    static EffectivePrincipalPolicy compile(Principal principal, Fingerprint fingerprint, PolicyCompiler compiler) {
+        Set<Statement> seen = new LinkedHashSet<>();
+        List<CompiledStatement> statements = new ArrayList<>();
+        addStatements(principal.getPolicy(), compiler, seen, statements);
+        for (Role role : principal.getRoles()) {
+            addStatements(role.getPolicy(), compiler, seen, statements);
+        }
+        CompiledPolicy policy = new CompiledPolicy(null, statements);
+        if (compiler.isCompilingDiagrams()) {
+            policy.getDiagram(true);
+        }
+        return new EffectivePrincipalPolicy(principal, fingerprint, policy);
+    }
+
+    private static void addStatements(Policy policy, PolicyCompiler compiler, Set<Statement> seen,
+                                      List<CompiledStatement> statements) {
+        for (CompiledStatement statement : compiler.compile(policy).getStatements()) {
+            if (seen.add(statement.getStatement())) {
+                statements.add(statement);
+            }
+        }
+    }
+
+    public String getPrincipalId() {
+        return principalId;
+    }
+
+    public CompiledPolicy getPolicy() {
+        return policy;
+    }
+
+    public List<CompiledStatement> getStatements() {
+        return policy.getStatements();
+    }
+
+    Fingerprint getFingerprint() {
+        return fingerprint;
+    }
+
+    PrincipalIdentity getIdentity() {
+        return identity;
+    }
+
+    /**
+     * Returns, in declaration order, the statements whose action and principal patterns match the
+     * given resource type and action.
+     */
+    List<CompiledStatement> getApplicableStatements(String type, String action) {
+        if (type == null || action == null) {
+            return collectApplicableStatements(type, action);
+        }
+        Map<String, List<CompiledStatement>> byAction = applicableStatements.get(type);
+        List<CompiledStatement> applicable = byAction != null ? byAction.get(action) : null;
+        if (applicable == null) {
+            applicable = collectApplicableStatements(type, action);
+            if (cachedActions.get() < MAX_CACHED_ACTIONS &&
+                applicableStatements.computeIfAbsent(type, key -> new ConcurrentHashMap<>())
+                        .putIfAbsent(action, applicable) == null) {
+                cachedActions.incrementAndGet();
+            }
+        }
+        return applicable;
+    }
+
+    private List<CompiledStatement> collectApplicableStatements(String type, String action) {
+        boolean splittable = CompiledActionPattern.isSplittable(type, action);
+        int typeSymbol = SymbolTable.lookup(type);
+        int actionSymbol = SymbolTable.lookup(action);
+        List<CompiledStatement> applicable = new ArrayList<>();
+        for (CompiledStatement statement : policy.getStatementsForAction(type, action)) {
+            if (statement.matchesAction(type, typeSymbol, action, actionSymbol, splittable) &&
+                statement.appliesTo(identity, true)) {
+                applicable.add(statement);
+            }
+        }
+        return List.copyOf(applicable);
+    }
+
+    /**
+     * What an effective policy is computed from: the principal's own policy and its roles with their
+     * policies. Two fingerprints are equal when these are equal by value.
+     */
+    @EqualsAndHashCode
+    static final class Fingerprint {
+        private final Policy policy;
+        private final List<String> roleIds;
+        private final List<Policy> rolePolicies;
+
+        Fingerprint(Principal principal) {
+            List<Role> roles = principal.getRoles();
+            this.policy = principal.getPolicy();
+            this.roleIds = new ArrayList<>(roles.size());
+            this.rolePolicies = new ArrayList<>(roles.size());
+            for (Role role : roles) {
+                roleIds.add(role.getId());
+                rolePolicies.add(role.getPolicy());
+            }
+        }
+
+        boolean hasRole(String roleId) {
+            return roleIds.contains(roleId);
+        }
+    }
+}
@@ -0,0 +1,234 @@
+package org.authzen;
+
+import lombok.Getter;
+import org.apache.commons.jexl3.JexlContext;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * The state of a single authorization request, shared by every condition evaluated for it.
+ * It resolves {@code principal}, {@code resource}, {@code action} and {@code context} directly from
+ * its fields. Variables assigned by a condition are kept aside and dropped after that condition,
+ * so they never leak into the next one.
+ */
+@Getter
+final class EvaluationContext implements JexlContext, ConditionRequest {
+    private final Principal principal;
+    private final Resource resource;
+    private final String action;
+    private final Object context;
+    /** Whether action patterns can match the resource type and the action separately. */
+    private final boolean actionSplittable;
+    /** The prepared identity side of a batch, or {@code null} for a single request. */
+    private final PreparedPrincipal prepared;
+    @Getter(lombok.AccessLevel.NONE)
+    private PrincipalIdentity identity;
+    @Getter(lombok.AccessLevel.NONE)
+    private int typeSymbol;
+    @Getter(lombok.AccessLevel.NONE)
+    private int actionSymbol;
+    /** The symbol table generation the symbols were last looked up in. */
+    @Getter(lombok.AccessLevel.NONE)
+    private int symbolGeneration;
+    private Map<String, Object> assignments;
+    /** Whether a condition evaluated for this request read principal attributes beyond its ID. */
+    private boolean principalAttributesRead;
+    /** Whether a condition evaluated for this request read resource attributes beyond its ID and type. */
+    private boolean resourceAttributesRead;
+    /** Whether a condition evaluated for this request may give another result for the same inputs. */
+    private boolean nondeterministic;
+    /** The context paths read by the conditions evaluated for this request, or {@code null} if none. */
+    @Getter(lombok.AccessLevel.NONE)
+    private Set<List<String>> contextPaths;
+
+    EvaluationContext(Principal principal, Resource resource, String action, Object context) {
+        this(principal, null, resource, action, null, context);
+    }
+
+    EvaluationContext(Principal principal, Resource resource, Action action, Object context) {
+        this(principal, null, resource, action.getName(), action, context);
+    }
+
+    EvaluationContext(PreparedPrincipal prepared, Resource resource, String action, Object context) {
+        this(prepared.getPrincipal(), prepared, resource, action, null, context);
+    }
+
+    EvaluationContext(PreparedPrincipal prepared, Resource resource, Action action, Object context) {
+        this(prepared.getPrincipal(), prepared, resource, action.getName(), action, context);
+    }
+
+    private EvaluationContext(Principal principal, PreparedPrincipal prepared, Resource resource, String action,
+                              Action parsed, Object context) {
+        this.principal = principal;
+        this.prepared = prepared;
+        this.resource = resource;
+        this.action = action;
+        this.context = context;
+        this.actionSplittable = CompiledActionPattern.isSplittable(resource.getType(), action);
+        this.identity = prepared != null ? prepared.getIdentity() : null;
+        this.symbolGeneration = SymbolTable.generation();
+        this.typeSymbol = SymbolTable.lookup(resource.getType());
+        // read after the generation, so the action's symbol is at least as recent
+        this.actionSymbol = parsed != null ? parsed.getSymbol() : SymbolTable.lookup(action);
+    }
+
+    /** Copies the request for another thread, without the assignments and recorded dependencies. */
+    private EvaluationContext(EvaluationContext request) {
+        this.principal = request.principal;
+        this.prepared = request.prepared;
+        this.resource = request.resource;
+        this.action = request.action;
+        this.context = request.context;
+        this.actionSplittable = request.actionSplittable;
+        this.identity = request.identity;
+        this.typeSymbol = request.typeSymbol;
+        this.actionSymbol = request.actionSymbol;
+        this.symbolGeneration = request.symbolGeneration;
+    }
+
+    /**
+     * Returns a copy of the request for evaluating statements on another thread. The dependencies
+     * the copy records are added back with {@link #join(EvaluationContext)}.
+     */
+    EvaluationContext fork() {
+        getIdentity();
+        refreshSymbols();
+        return new EvaluationContext(this);
+    }
+
+    void join(EvaluationContext fork) {
+        principalAttributesRead |= fork.principalAttributesRead;
+        resourceAttributesRead |= fork.resourceAttributesRead;
+        nondeterministic |= fork.nondeterministic;
+        if (fork.contextPaths != null) {
+            addContextPaths(fork.contextPaths);
+        }
+    }
+
+    /**
+     * Returns the context paths read by the conditions evaluated for this request.
+     */
+    Set<List<String>> getContextPaths() {
+        return contextPaths != null ? contextPaths : Set.of();
+    }
+
+    /**
+     * Returns the symbol of the resource type, or {@link SymbolTable#UNKNOWN} if no compiled policy uses it.
+     */
+    int getTypeSymbol() {
+        refreshSymbols();
+        return typeSymbol;
+    }
+
+    /**
+     * Returns the symbol of the action, or {@link SymbolTable#UNKNOWN} if no compiled policy uses it.
+     */
+    int getActionSymbol() {
+        refreshSymbols();
+        return actionSymbol;
+    }
+
+    /** Looks the symbols up again if policies compiled since then may have interned them anew. */
+    private void refreshSymbols() {
+        int generation = SymbolTable.generation();
+        if (symbolGeneration != generation) {
+            symbolGeneration = generation;
+            typeSymbol = SymbolTable.lookup(resource.getType());
+            actionSymbol = SymbolTable.lookup(action);
+        }
+    }
+
+    /**
+     * Returns the {@code type:action} value action patterns are defined against.
+     */
+    String getFullAction() {
+        return resource.getType() + ":" + action;
+    }
+
+    /**
+     * Returns whether the statement's action patterns match the request's resource type and action.
+     */
+    boolean matchesAction(CompiledStatement statement) {
+        return statement.matchesAction(resource.getType(), getTypeSymbol(), action, getActionSymbol(),
+                actionSplittable);
+    }
+
+    /**
+     * Returns the principal's identity, computed on first use.
+     */
+    PrincipalIdentity getIdentity() {
+        if (identity == null) {
+            identity = new PrincipalIdentity(principal);
+        }
+        return identity;
+    }
+
+    @Override
+    public Object get(String name) {
+        if (assignments != null && assignments.containsKey(name)) {
+            return assignments.get(name);
+        }
+        switch (name) {
+            case "principal":
+                return principal;
+            case "resource":
+                return resource;
+            case "action":
+                return action;
+            case "context":
+                return context;
+            default:
+                return null;
+        }
+    }
+
+    @Override
+    public void set(String name, Object value) {
+        if (assignments == null) {
+            assignments = new HashMap<>();
+        }
+        assignments.put(name, value);
+    }
+
+    @Override
+    public boolean has(String name) {
+        if (assignments != null && assignments.containsKey(name)) {
+            return true;
+        }
+        switch (name) {
+            case "principal":
+            case "resource":
+            case "action":
+                return true;
+            case "context":
+                return context != null;
+            default:
+                return false;
+        }
+    }
+
+    void recordDependencies(ConditionDependencies dependencies) {
+        principalAttributesRead |= dependencies.readsPrincipalAttributes();
+        resourceAttributesRead |= dependencies.readsResourceAttributes();
+        nondeterministic |= !dependencies.isDeterministic();
+        if (!dependencies.getContextPaths().isEmpty()) {
+            addContextPaths(dependencies.getContextPaths());
+        }
+    }
+
+    private void addContextPaths(Set<List<String>> paths) {
+        if (contextPaths == null) {
+            contextPaths = new HashSet<>();
+        }
+        contextPaths.addAll(paths);
+    }
+
+    void clearAssignments() {
+        if (assignments != null) {
+            assignments.clear();
+        }
+    }
+}
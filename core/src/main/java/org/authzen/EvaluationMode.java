@@ -0,0 +1,34 @@
+package org.authzen;
+
+/**
+ * How much work {@link AuthorizationEngine} does to reach a {@link Decision}.
+ */
+public enum EvaluationMode {
+    /**
+     * Evaluates every statement and reports all matched statements. This is the default.
+     */
+    FULL,
+    /**
+     * Checks deny statements first and stops at the first one that matches, then stops once both an
+     * identity and a resource allow have been found. Conditions are only evaluated for statements
+     * whose patterns match, after the unconditional statements have been checked. The decision and
+     * its reason are the same as in {@link #FULL} mode, but the matched statements only contain the
+     * statements that decided it.
+     */
+    SHORT_CIRCUIT,
+    /**
+     * Evaluates like {@link #SHORT_CIRCUIT} but returns one of the shared {@link Decision} constants,
+     * without matched statements, so that no decision or list is allocated.
+     */
+    DECISION_ONLY,
+    /**
+     * Decides with a walk through the {@link DecisionDiagram}s of the principal's effective policy and
+     * of the resource policy, each compiled once per compiled policy: together with it if the
+     * {@link PolicyCompiler} {@linkplain PolicyCompiler#isCompilingDiagrams() compiles diagrams}, otherwise
+     * on its first evaluation. Returns the same shared
+     * {@link Decision} constants as {@link #DECISION_ONLY}. Suited to resource policies shared by many
+     * resources and evaluated very often; requests for which either diagram would be too large are
+     * evaluated like {@link #DECISION_ONLY}.
+     */
+    DIAGRAM
+}
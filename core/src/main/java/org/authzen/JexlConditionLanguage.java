@@ -0,0 +1,102 @@
+package org.authzen;
+
+import org.apache.commons.jexl3.JexlBuilder;
+import org.apache.commons.jexl3.JexlContext;
+import org.apache.commons.jexl3.JexlEngine;
+import org.apache.commons.jexl3.JexlExpression;
+import org.apache.commons.jexl3.MapContext;
+
+/**
+ * The default condition language, <a href="https://commons.apache.org/proper/commons-jexl/">JEXL</a>,
+ * sandboxed by {@link ConditionPermissions} and introspected by {@link ConditionUberspect}. Conditions are optionally also compiled by a {@link ConditionCompiler}; those it cannot compile,
+ * or cannot evaluate on its own, are evaluated by the JEXL interpreter.
+ */
+public final class JexlConditionLanguage implements ConditionLanguage {
+    public static final String NAME = "jexl";
+
+    private static final JexlEngine JEXL = new JexlBuilder()
+            .permissions(ConditionPermissions.INSTANCE)
+            .uberspect(new ConditionUberspect())
+            .safe(false)
+            .silent(false)
+            .strict(false)
+            .create();
+
+    /** {@code null} unless conditions are compiled. */
+    private final ConditionCompiler compiler;
+
+    public JexlConditionLanguage() {
+        this(false);
+    }
+
+    public JexlConditionLanguage(boolean compileConditions) {
+        this.compiler = compileConditions ? new ConditionCompiler(JEXL) : null;
+    }
+
+    @Override
+    public String getName() {
+        return NAME;
+    }
+
+    @Override
+    public Condition parse(String source) {
+        JexlExpression expression = JEXL.createExpression(source);
+        return new JexlCondition(expression, compiler != null ? compiler.compile(expression) : null,
+                ConditionAnalyzer.analyze(expression));
+    }
+
+    static final class JexlCondition implements Condition {
+        private final JexlExpression expression;
+        /** The condition compiled to closures, or {@code null} if it is evaluated by the interpreter. */
+        private final ConditionCompiler.Evaluator compiled;
+        /** Set once the compiled condition has failed; from then on only the interpreter evaluates it. */
+        private volatile boolean interpreted;
+        private final ConditionDependencies dependencies;
+
+        private JexlCondition(JexlExpression expression, ConditionCompiler.Evaluator compiled,
+                              ConditionDependencies dependencies) {
+            this.expression = expression;
+            this.compiled = compiled;
+            this.dependencies = dependencies;
+        }
+
+        @Override
+        public ConditionResult evaluate(ConditionRequest request) {
+            JexlContext context = request instanceof JexlContext jexlContext ? jexlContext : variables(request);
+            if (compiled != null && !interpreted) {
+                try {
+                    return ConditionResult.of(Boolean.TRUE.equals(compiled.evaluate(context)));
+                } catch (ConditionCompiler.Fallback e) {
+                    // this request needs the interpreter, evaluated below
+                } catch (Exception e) {
+                    // the interpreter may report the failure differently, so the result must come from it;
+                    // stop evaluating twice a condition that fails this way
+                    interpreted = true;
+                }
+            }
+            try {
+                return ConditionResult.of(Boolean.TRUE.equals(expression.evaluate(context)));
+            } catch (RuntimeException e) {
+                return ConditionResult.ERROR;
+            }
+        }
+
+        @Override
+        public ConditionDependencies getDependencies() {
+            return dependencies;
+        }
+
+        boolean isCompiled() {
+            return compiled != null && !interpreted;
+        }
+
+        private static JexlContext variables(ConditionRequest request) {
+            MapContext context = new MapContext();
+            context.set("principal", request.getPrincipal());
+            context.set("resource", request.getResource());
+            context.set("action", request.getAction());
+            context.set("context", request.getContext());
+            return context;
+        }
+    }
+}
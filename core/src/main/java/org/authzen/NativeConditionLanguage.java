@@ -0,0 +1,466 @@
+package org.authzen;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.function.IntPredicate;
+
+/**
+ * A small condition language evaluated without an interpreter or reflection. Conditions are parsed
+ * into a tree of closures that read the request through typed accessors.
+ * <p>
+ * Grammar:
+ * <pre>
+ * condition  := or
+ * or         := and (('||' | 'or') and)*
+ * and        := unary (('&amp;&amp;' | 'and') unary)*
+ * unary      := ('!' | 'not') unary | comparison
+ * comparison := operand [operator operand]
+ * operator   := '==' | '!=' | '&lt;' | '&lt;=' | '&gt;' | '&gt;=' | 'in' | 'not' 'in'
+ *             | 'contains' | 'startsWith' | 'endsWith'
+ * operand    := literal | '[' [literal (',' literal)*] ']' | path | '(' or ')'
+ * literal    := string | number | 'true' | 'false' | 'null'
+ * path       := ('principal' | 'resource' | 'context') ('.' identifier)* | 'action'
+ * </pre>
+ * Strings are quoted with {@code '} or {@code "}. Numbers compare by value whatever their type, other
+ * values with {@code equals}; ordering applies to two numbers or two strings and is otherwise false.
+ * {@code in} tests membership in a list or collection, {@code contains} the reverse or a substring.
+ * Only {@code true} is true; there are no implicit conversions.
+ * <p>
+ * {@code principal.id}, {@code principal.roles} (the role IDs), {@code resource.id} and
+ * {@code resource.type} are built in. Other properties are read from {@link Map}s,
+ * {@link Attributed} values and role attributes.
+ */
+public final class NativeConditionLanguage implements ConditionLanguage {
+    public static final String NAME = "native";
+
+    @Override
+    public String getName() {
+        return NAME;
+    }
+
+    @Override
+    public Condition parse(String source) {
+        return new Parser(source).parse();
+    }
+
+    /** A compiled part of a condition. */
+    @FunctionalInterface
+    private interface Value {
+        Object get(ConditionRequest request);
+    }
+
+    private static final class NativeCondition implements Condition {
+        private final Value value;
+        private final ConditionDependencies dependencies;
+
+        private NativeCondition(Value value, ConditionDependencies dependencies) {
+            this.value = value;
+            this.dependencies = dependencies;
+        }
+
+        @Override
+        public ConditionResult evaluate(ConditionRequest request) {
+            return ConditionResult.of(Boolean.TRUE.equals(value.get(request)));
+        }
+
+        @Override
+        public ConditionDependencies getDependencies() {
+            return dependencies;
+        }
+    }
+
+    private static final class Parser {
+        private final String source;
+        private final List<String> tokens = new ArrayList<>();
+        private final List<Integer> positions = new ArrayList<>();
+        private final Set<String> roots = new HashSet<>();
+        private final Set<List<String>> paths = new HashSet<>();
+        private int next;
+
+        private Parser(String source) {
+            this.source = source;
+            tokenize();
+        }
+
+        NativeCondition parse() {
+            Value value = or();
+            if (next < tokens.size()) {
+                throw unexpected();
+            }
+            return new NativeCondition(value, new ConditionDependencies(roots, paths, true));
+        }
+
+        private Value or() {
+            Value left = and();
+            while (accept("||") || accept("or")) {
+                Value first = left;
+                Value second = and();
+                left = request -> isTrue(first.get(request)) || isTrue(second.get(request));
+            }
+            return left;
+        }
+
+        private Value and() {
+            Value left = unary();
+            while (accept("&&") || accept("and")) {
+                Value first = left;
+                Value second = unary();
+                left = request -> isTrue(first.get(request)) && isTrue(second.get(request));
+            }
+            return left;
+        }
+
+        private Value unary() {
+            if (accept("!") || (peek("not") && !peek(1, "in") && accept("not"))) {
+                Value operand = unary();
+                return request -> !isTrue(operand.get(request));
+            }
+            return comparison();
+        }
+
+        private Value comparison() {
+            Value left = operand();
+            if (accept("==")) {
+                Value right = operand();
+                return request -> same(left.get(request), right.get(request));
+            }
+            if (accept("!=")) {
+                Value right = operand();
+                return request -> !same(left.get(request), right.get(request));
+            }
+            if (accept("<=")) {
+                Value right = operand();
+                return request -> compare(left.get(request), right.get(request), c -> c <= 0);
+            }
+            if (accept(">=")) {
+                Value right = operand();
+                return request -> compare(left.get(request), right.get(request), c -> c >= 0);
+            }
+            if (accept("<")) {
+                Value right = operand();
+                return request -> compare(left.get(request), right.get(request), c -> c < 0);
+            }
+            if (accept(">")) {
+                Value right = operand();
+                return request -> compare(left.get(request), right.get(request), c -> c > 0);
+            }
+            if (accept("in")) {
+                Value right = operand();
+                return request -> contains(right.get(request), left.get(request));
+            }
+            if (peek("not") && peek(1, "in")) {
+                next += 2;
+                Value right = operand();
+                return request -> !contains(right.get(request), left.get(request));
+            }
+            if (accept("contains")) {
+                Value right = operand();
+                return request -> contains(left.get(request), right.get(request));
+            }
+            if (accept("startsWith")) {
+                Value right = operand();
+                return request -> left.get(request) instanceof String value &&
+                                  right.get(request) instanceof String prefix && value.startsWith(prefix);
+            }
+            if (accept("endsWith")) {
+                Value right = operand();
+                return request -> left.get(request) instanceof String value &&
+                                  right.get(request) instanceof String suffix && value.endsWith(suffix);
+            }
+            return left;
+        }
+
+        private Value operand() {
+            if (accept("(")) {
+                Value value = or();
+                expect(")");
+                return value;
+            }
+            if (accept("[")) {
+                List<Object> values = new ArrayList<>();
+                if (!accept("]")) {
+                    do {
+                        values.add(literal());
+                    } while (accept(","));
+                    expect("]");
+                }
+                List<Object> list = Collections.unmodifiableList(values);
+                return request -> list;
+            }
+            if (next < tokens.size() && isIdentifier(tokens.get(next)) && !isLiteralKeyword(tokens.get(next))) {
+                return path();
+            }
+            Object value = literal();
+            return request -> value;
+        }
+
+        private Object literal() {
+            if (next >= tokens.size()) {
+                throw unexpected();
+            }
+            String token = tokens.get(next);
+            char first = token.charAt(0);
+            Object value;
+            if (first == '\'' || first == '"') {
+                value = token.substring(1);
+            } else if (first == '-' || Character.isDigit(first)) {
+                value = token.indexOf('.') < 0 ? (Object) Long.parseLong(token) : new BigDecimal(token);
+            } else if (token.equals("true") || token.equals("false")) {
+                value = Boolean.valueOf(token);
+            } else if (token.equals("null")) {
+                value = null;
+            } else {
+                throw unexpected();
+            }
+            next++;
+            return value;
+        }
+
+        private Value path() {
+            int position = next;
+            String root = tokens.get(next++);
+            List<String> path = new ArrayList<>();
+            path.add(root);
+            while (accept(".")) {
+                if (next >= tokens.size() || !isIdentifier(tokens.get(next))) {
+                    throw unexpected();
+                }
+                path.add(tokens.get(next++));
+            }
+            Value value = switch (root) {
+                case "principal" -> path.size() > 1 ? principalProperty(path.get(1)) : ConditionRequest::getPrincipal;
+                case "resource" -> path.size() > 1 ? resourceProperty(path.get(1)) : ConditionRequest::getResource;
+                case "action" -> {
+                    if (path.size() > 1) {
+                        throw new IllegalArgumentException("The action has no property '" + path.get(1) +
+                                "' at position " + positions.get(position) + " in condition: " + source);
+                    }
+                    yield ConditionRequest::getAction;
+                }
+                case "context" -> path.size() > 1 ? property(ConditionRequest::getContext, path.get(1))
+                                                  : ConditionRequest::getContext;
+                default -> {
+                    throw new IllegalArgumentException("Unknown variable '" + root + "' at position " +
+                            positions.get(position) + " in condition: " + source);
+                }
+            };
+            for (int i = 2; i < path.size(); i++) {
+                value = property(value, path.get(i));
+            }
+            roots.add(root);
+            paths.add(List.copyOf(path));
+            return value;
+        }
+
+        private static Value principalProperty(String name) {
+            return switch (name) {
+                case "id" -> request -> request.getPrincipal() != null ? request.getPrincipal().getId() : null;
+                case "roles" -> request -> request.getPrincipal() != null ? roleIds(request.getPrincipal()) : null;
+                default -> property(ConditionRequest::getPrincipal, name);
+            };
+        }
+
+        private static Value resourceProperty(String name) {
+            return switch (name) {
+                case "id" -> request -> request.getResource() != null ? request.getResource().getId() : null;
+                case "type" -> request -> request.getResource() != null ? request.getResource().getType() : null;
+                default -> property(ConditionRequest::getResource, name);
+            };
+        }
+
+        private static Value property(Value target, String name) {
+            return request -> attribute(target.get(request), name);
+        }
+
+        private boolean accept(String token) {
+            if (peek(token)) {
+                next++;
+                return true;
+            }
+            return false;
+        }
+
+        private void expect(String token) {
+            if (!accept(token)) {
+                throw unexpected();
+            }
+        }
+
+        private boolean peek(String token) {
+            return peek(0, token);
+        }
+
+        private boolean peek(int offset, String token) {
+            return next + offset < tokens.size() && tokens.get(next + offset).equals(token);
+        }
+
+        private IllegalArgumentException unexpected() {
+            if (next >= tokens.size()) {
+                return new IllegalArgumentException("Unexpected end of condition: " + source);
+            }
+            return new IllegalArgumentException("Unexpected '" + tokens.get(next) + "' at position " +
+                    positions.get(next) + " in condition: " + source);
+        }
+
+        /**
+         * Splits the source into tokens. A string token keeps its opening quote followed by the
+         * unescaped content, so that it cannot be mistaken for an identifier or keyword.
+         */
+        private void tokenize() {
+            int i = 0;
+            while (i < source.length()) {
+                char c = source.charAt(i);
+                int start = i;
+                if (Character.isWhitespace(c)) {
+                    i++;
+                    continue;
+                }
+                if (c == '\'' || c == '"') {
+                    StringBuilder value = new StringBuilder().append(c);
+                    i++;
+                    while (i < source.length() && source.charAt(i) != c) {
+                        if (source.charAt(i) == '\\' && i + 1 < source.length()) {
+                            i++;
+                        }
+                        value.append(source.charAt(i++));
+                    }
+                    if (i >= source.length()) {
+                        throw new IllegalArgumentException("Unterminated string at position " + start +
+                                " in condition: " + source);
+                    }
+                    i++;
+                    add(value.toString(), start);
+                } else if (Character.isDigit(c) ||
+                           (c == '-' && i + 1 < source.length() && Character.isDigit(source.charAt(i + 1)))) {
+                    i++;
+                    while (i < source.length() && (Character.isDigit(source.charAt(i)) || source.charAt(i) == '.')) {
+                        i++;
+                    }
+                    add(source.substring(start, i), start);
+                } else if (Character.isJavaIdentifierStart(c)) {
+                    while (i < source.length() && Character.isJavaIdentifierPart(source.charAt(i))) {
+                        i++;
+                    }
+                    add(source.substring(start, i), start);
+                } else if (source.startsWith("==", i) || source.startsWith("!=", i) || source.startsWith("<=", i) ||
+                           source.startsWith(">=", i) || source.startsWith("&&", i) || source.startsWith("||", i)) {
+                    i += 2;
+                    add(source.substring(start, i), start);
+                } else if ("<>!()[],.".indexOf(c) >= 0) {
+                    i++;
+                    add(String.valueOf(c), start);
+                } else {
+                    throw new IllegalArgumentException("Unexpected '" + c + "' at position " + start +
+                            " in condition: " + source);
+                }
+            }
+        }
+
+        private void add(String token, int position) {
+            tokens.add(token);
+            positions.add(position);
+        }
+
+        private static boolean isIdentifier(String token) {
+            return Character.isJavaIdentifierStart(token.charAt(0));
+        }
+
+        private static boolean isLiteralKeyword(String token) {
+            return token.equals("true") || token.equals("false") || token.equals("null");
+        }
+    }
+
+    private static boolean isTrue(Object value) {
+        return Boolean.TRUE.equals(value);
+    }
+
+    private static List<String> roleIds(Principal principal) {
+        List<Role> roles = principal.getRoles();
+        List<String> ids = new ArrayList<>(roles.size());
+        for (Role role : roles) {
+            ids.add(role.getId());
+        }
+        return ids;
+    }
+
+    private static Object attribute(Object target, String name) {
+        if (target instanceof Map<?, ?> map) {
+            return map.get(name);
+        }
+        if (target instanceof Attributed attributed) {
+            return attributed.getAttribute(name);
+        }
+        if (target instanceof Role role) {
+            return switch (name) {
+                case "id" -> role.getId();
+                case "name" -> role.getName();
+                default -> role.getAttributes().get(name);
+            };
+        }
+        return null;
+    }
+
+    private static boolean same(Object left, Object right) {
+        if (left instanceof Number a && right instanceof Number b) {
+            return compareNumbers(a, b) == 0;
+        }
+        return Objects.equals(left, right);
+    }
+
+    private static boolean compare(Object left, Object right, IntPredicate ordering) {
+        if (left instanceof Number a && right instanceof Number b) {
+            return ordering.test(compareNumbers(a, b));
+        }
+        if (left instanceof String a && right instanceof String b) {
+            return ordering.test(a.compareTo(b));
+        }
+        return false;
+    }
+
+    private static int compareNumbers(Number a, Number b) {
+        if (a instanceof Double || a instanceof Float || b instanceof Double || b instanceof Float) {
+            return Double.compare(a.doubleValue(), b.doubleValue());
+        }
+        if (isIntegral(a) && isIntegral(b)) {
+            return Long.compare(a.longValue(), b.longValue());
+        }
+        return toBigDecimal(a).compareTo(toBigDecimal(b));
+    }
+
+    private static boolean isIntegral(Number number) {
+        return number instanceof Long || number instanceof Integer || number instanceof Short ||
+               number instanceof Byte;
+    }
+
+    private static BigDecimal toBigDecimal(Number number) {
+        if (number instanceof BigDecimal decimal) {
+            return decimal;
+        }
+        if (number instanceof BigInteger integer) {
+            return new BigDecimal(integer);
+        }
+        return isIntegral(number) ? BigDecimal.valueOf(number.longValue()) : new BigDecimal(number.toString());
+    }
+
+    private static boolean contains(Object container, Object value) {
+        if (container instanceof String string) {
+            return value instanceof String part && string.contains(part);
+        }
+        if (container instanceof Collection<?> collection) {
+            for (Object element : collection) {
+                if (same(element, value)) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+}
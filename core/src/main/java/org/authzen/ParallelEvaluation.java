@@ -0,0 +1,181 @@
+package org.authzen;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Opt-in parallel evaluation of large candidate statement lists, such as the effective policy of a
+ * principal that aggregates the statements of many roles. Lists with at least {@code threshold}
+ * statements are split into chunks evaluated on a {@link ForkJoinPool}, each on its own copy of the
+ * request. All matches are reported in declaration order. A search for the first match returns the
+ * first one in declaration order, like sequential evaluation, with workers skipping the statements
+ * after a match another worker already found. When any match will do, as for a decision that is not
+ * explained, all workers stop at the first match found.
+ */
+public final class ParallelEvaluation {
+    public static final int DEFAULT_THRESHOLD = 2_048;
+
+    private final ForkJoinPool pool;
+    private final int threshold;
+    /** The number of statements a task evaluates without splitting further. */
+    private final int chunkSize;
+
+    public ParallelEvaluation(ForkJoinPool pool, int threshold) {
+        if (threshold < 1) {
+            throw new IllegalArgumentException("Parallel evaluation threshold must be positive");
+        }
+        this.pool = pool;
+        this.threshold = threshold;
+        // a list at the threshold is split into about one chunk per worker
+        this.chunkSize = Math.max(1, threshold / pool.getParallelism());
+    }
+
+    /**
+     * Evaluates lists of at least {@link #DEFAULT_THRESHOLD} statements on the common pool.
+     */
+    public static ParallelEvaluation commonPool() {
+        return new ParallelEvaluation(ForkJoinPool.commonPool(), DEFAULT_THRESHOLD);
+    }
+
+    public ForkJoinPool getPool() {
+        return pool;
+    }
+
+    public int getThreshold() {
+        return threshold;
+    }
+
+    boolean appliesTo(List<CompiledStatement> statements) {
+        return statements.size() >= threshold;
+    }
+
+    /**
+     * Returns the index of the first statement that matches, or of the first match found if {@code any}
+     * is set, or {@code -1} if none does.
+     */
+    int firstMatch(List<CompiledStatement> statements, EvaluationContext request, boolean any,
+                   StatementMatcher matcher) {
+        AtomicInteger first = new AtomicInteger(Integer.MAX_VALUE);
+        Queue<EvaluationContext> workers = new ConcurrentLinkedQueue<>();
+        // forked on this thread so that the lazily computed parts of the request are shared by the workers
+        EvaluationContext template = request.fork();
+        pool.invoke(new FirstMatchTask(statements, 0, statements.size(), template, any, matcher, first, workers));
+        workers.forEach(request::join);
+        return first.get() != Integer.MAX_VALUE ? first.get() : -1;
+    }
+
+    /**
+     * Returns the statements that match, in declaration order.
+     */
+    List<CompiledStatement> allMatches(List<CompiledStatement> statements, EvaluationContext request,
+                                       StatementMatcher matcher) {
+        boolean[] matched = new boolean[statements.size()];
+        Queue<EvaluationContext> workers = new ConcurrentLinkedQueue<>();
+        EvaluationContext template = request.fork();
+        pool.invoke(new AllMatchesTask(statements, 0, statements.size(), template, matcher, matched, workers));
+        workers.forEach(request::join);
+        List<CompiledStatement> matches = new ArrayList<>();
+        for (int i = 0; i < matched.length; i++) {
+            if (matched[i]) {
+                matches.add(statements.get(i));
+            }
+        }
+        return matches;
+    }
+
+    @FunctionalInterface
+    interface StatementMatcher {
+        boolean matches(CompiledStatement statement, EvaluationContext request);
+    }
+
+    private final class FirstMatchTask extends RecursiveAction {
+        private final List<CompiledStatement> statements;
+        private final int from;
+        private final int to;
+        private final EvaluationContext request;
+        private final boolean any;
+        private final StatementMatcher matcher;
+        private final AtomicInteger first;
+        private final Queue<EvaluationContext> workers;
+
+        private FirstMatchTask(List<CompiledStatement> statements, int from, int to, EvaluationContext request,
+                               boolean any, StatementMatcher matcher, AtomicInteger first,
+                               Queue<EvaluationContext> workers) {
+            this.statements = statements;
+            this.from = from;
+            this.to = to;
+            this.request = request;
+            this.any = any;
+            this.matcher = matcher;
+            this.first = first;
+            this.workers = workers;
+        }
+
+        @Override
+        protected void compute() {
+            if (isDone(from)) {
+                return;
+            }
+            if (to - from > chunkSize) {
+                int middle = (from + to) >>> 1;
+                invokeAll(new FirstMatchTask(statements, from, middle, request, any, matcher, first, workers),
+                        new FirstMatchTask(statements, middle, to, request, any, matcher, first, workers));
+                return;
+            }
+            EvaluationContext worker = request.fork();
+            workers.add(worker);
+            for (int i = from; i < to && !isDone(i); i++) {
+                if (matcher.matches(statements.get(i), worker)) {
+                    first.accumulateAndGet(i, Math::min);
+                    return;
+                }
+            }
+        }
+
+        /** Returns whether the statement at the index need not be evaluated given the matches found. */
+        private boolean isDone(int index) {
+            return any ? first.get() != Integer.MAX_VALUE : index >= first.get();
+        }
+    }
+
+    private final class AllMatchesTask extends RecursiveAction {
+        private final List<CompiledStatement> statements;
+        private final int from;
+        private final int to;
+        private final EvaluationContext request;
+        private final StatementMatcher matcher;
+        private final boolean[] matched;
+        private final Queue<EvaluationContext> workers;
+
+        private AllMatchesTask(List<CompiledStatement> statements, int from, int to, EvaluationContext request,
+                               StatementMatcher matcher, boolean[] matched, Queue<EvaluationContext> workers) {
+            this.statements = statements;
+            this.from = from;
+            this.to = to;
+            this.request = request;
+            this.matcher = matcher;
+            this.matched = matched;
+            this.workers = workers;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from > chunkSize) {
+                int middle = (from + to) >>> 1;
+                invokeAll(new AllMatchesTask(statements, from, middle, request, matcher, matched, workers),
+                        new AllMatchesTask(statements, middle, to, request, matcher, matched, workers));
+                return;
+            }
+            EvaluationContext worker = request.fork();
+            workers.add(worker);
+            for (int i = from; i < to; i++) {
+                matched[i] = matcher.matches(statements.get(i), worker);
+            }
+        }
+    }
+}
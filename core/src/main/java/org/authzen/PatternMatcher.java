@@ -1,13 +1,31 @@
 package org.authzen;
 
-import java.nio.file.FileSystems;
-import java.nio.file.PathMatcher;
-import java.nio.file.Paths;
-
+/**
+ * Matches values against glob patterns. Each distinct pattern is compiled once and kept
+ * in a bounded cache shared by all callers of this matcher.
+ */
 public class PatternMatcher {
-    
+    public static final int DEFAULT_CACHE_SIZE = 10_000;
+
+    private final BoundedCache<String, CompiledPattern> cache;
+
+    public PatternMatcher() {
+        this(DEFAULT_CACHE_SIZE);
+    }
+
+    public PatternMatcher(int maximumCacheSize) {
+        this.cache = new BoundedCache<>(maximumCacheSize);
+    }
+
+    public CompiledPattern compile(String pattern) {
+        return cache.get(pattern, CompiledPattern::compile);
+    }
+
     public boolean matches(String pattern, String value) {
-        PathMatcher matcher = FileSystems.getDefault().getPathMatcher("glob:" + pattern);
-        return matcher.matches(Paths.get(value));
+        return compile(pattern).matches(value);
+    }
+
+    public CacheStats getCacheStats() {
+        return cache.stats();
     }
 }
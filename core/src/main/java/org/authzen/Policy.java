@@ -1,11 +1,17 @@
 package org.authzen;
 
 import lombok.Builder;
+import lombok.EqualsAndHashCode;
 import lombok.Value;
 import java.util.List;
 
+/**
+ * A policy, compared by value. Its hash code is computed once, so policies must not change once
+ * built: compiled policies, effective policies and cached decisions are keyed by them.
+ */
 @Value
 @Builder
+@EqualsAndHashCode(cacheStrategy = EqualsAndHashCode.CacheStrategy.LAZY)
 public class Policy {
     String id;
     String name;
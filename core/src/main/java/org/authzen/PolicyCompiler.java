@@ -0,0 +1,108 @@
+package org.authzen;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Compiles policies and statements into their immutable compiled form. Compiled policies are
+ * cached by value, so a policy that is loaded again with the same content is not recompiled. Policies
+ * cache their hash code and compare equal to themselves first, so looking up the same policy again
+ * does not walk its statements.
+ * Patterns and conditions are shared through the underlying {@link PatternMatcher} and
+ * {@link ConditionEvaluator} caches.
+ */
+public class PolicyCompiler {
+    public static final int DEFAULT_CACHE_SIZE = 10_000;
+
+    private static final PolicyCompiler DEFAULT = new PolicyCompiler();
+
+    private final PatternMatcher patternMatcher;
+    private final ConditionEvaluator conditionEvaluator;
+    private final BoundedCache<Policy, CompiledPolicy> cache;
+    private final boolean compileDiagrams;
+
+    public PolicyCompiler() {
+        this(new PatternMatcher(), new ConditionEvaluator(), DEFAULT_CACHE_SIZE);
+    }
+
+    public PolicyCompiler(PatternMatcher patternMatcher, ConditionEvaluator conditionEvaluator, int maximumCacheSize) {
+        this(patternMatcher, conditionEvaluator, maximumCacheSize, false);
+    }
+
+    /**
+     * @param compileDiagrams whether the {@link DecisionDiagram}s of {@link EvaluationMode#DIAGRAM} are built
+     *                        together with the compiled policies, rather than on their first evaluation
+     */
+    public PolicyCompiler(PatternMatcher patternMatcher, ConditionEvaluator conditionEvaluator, int maximumCacheSize,
+                          boolean compileDiagrams) {
+        this.patternMatcher = patternMatcher;
+        this.conditionEvaluator = conditionEvaluator;
+        this.cache = new BoundedCache<>(maximumCacheSize);
+        this.compileDiagrams = compileDiagrams;
+    }
+
+    /**
+     * Returns the compiler shared by {@link PolicyFactory}, {@link StatementFactory} and engines
+     * created without an explicit compiler.
+     */
+    public static PolicyCompiler getDefault() {
+        return DEFAULT;
+    }
+
+    public ConditionEvaluator getConditionEvaluator() {
+        return conditionEvaluator;
+    }
+
+    public boolean isCompilingDiagrams() {
+        return compileDiagrams;
+    }
+
+    public CompiledPolicy compile(Policy policy) {
+        if (policy == null) {
+            return CompiledPolicy.EMPTY;
+        }
+        return cache.get(policy, this::doCompile);
+    }
+
+    public CompiledStatement compile(Statement statement) {
+        return new CompiledStatement(statement,
+                compilePatterns(statement.getPrincipals()),
+                compilePatterns(statement.getNotPrincipals()),
+                compileActionPatterns(statement.getActions()),
+                compilePatterns(statement.getResources()),
+                conditionEvaluator.compile(statement.getConditionLanguage(), statement.getCondition()));
+    }
+
+    public CacheStats getCacheStats() {
+        return cache.stats();
+    }
+
+    private CompiledPolicy doCompile(Policy policy) {
+        List<CompiledStatement> statements = new ArrayList<>(policy.getStatements().size());
+        for (Statement statement : policy.getStatements()) {
+            statements.add(compile(statement));
+        }
+        CompiledPolicy compiled = new CompiledPolicy(policy, statements);
+        if (compileDiagrams) {
+            // compiled policies are evaluated as resource policies; identity policies are merged first
+            compiled.getDiagram(false);
+        }
+        return compiled;
+    }
+
+    private List<CompiledActionPattern> compileActionPatterns(List<String> patterns) {
+        List<CompiledActionPattern> compiled = new ArrayList<>(patterns.size());
+        for (String pattern : patterns) {
+            compiled.add(CompiledActionPattern.compile(patternMatcher.compile(pattern), patternMatcher));
+        }
+        return compiled;
+    }
+
+    private List<CompiledPattern> compilePatterns(List<String> patterns) {
+        List<CompiledPattern> compiled = new ArrayList<>(patterns.size());
+        for (String pattern : patterns) {
+            compiled.add(patternMatcher.compile(pattern));
+        }
+        return compiled;
+    }
+}
@@ -1,16 +1,9 @@
 package org.authzen;
 
-import org.apache.commons.jexl3.JexlBuilder;
-import org.apache.commons.jexl3.JexlEngine;
 import java.util.function.UnaryOperator;
+import java.util.regex.PatternSyntaxException;
 
 public class PolicyFactory {
-    private static final JexlEngine JEXL = new JexlBuilder()
-            .safe(false)
-            .silent(false)
-            .strict(false)
-            .create();
-
     public static Policy create(UnaryOperator<Policy.PolicyBuilder> configurator) {
         Policy.PolicyBuilder builder = Policy.builder();
         builder = configurator.apply(builder);
@@ -29,6 +22,21 @@ public class PolicyFactory {
         for (Statement statement : policy.getStatements()) {
             validateStatement(statement);
         }
+
+        CompiledPolicy compiled;
+        try {
+            compiled = PolicyCompiler.getDefault().compile(policy);
+        } catch (PatternSyntaxException e) {
+            throw new IllegalArgumentException("Invalid pattern in statement: " + e.getPattern(), e);
+        }
+        for (CompiledStatement statement : compiled.getStatements()) {
+            CompiledCondition condition = statement.getCondition();
+            if (!condition.isValid()) {
+                throw new IllegalArgumentException("Invalid " + condition.describeLanguage() +
+                        " condition in statement: " + condition.getSource(),
+                        condition.getError());
+            }
+        }
     }
 
     private static void validateStatement(Statement statement) {
@@ -44,13 +52,5 @@ public class PolicyFactory {
         if (statement.getResources() == null) {
             throw new IllegalArgumentException("Resources list cannot be null in statement");
         }
-        
-        if (statement.getCondition() != null && !statement.getCondition().isEmpty()) {
-            try {
-                JEXL.createExpression(statement.getCondition());
-            } catch (Exception e) {
-                throw new IllegalArgumentException("Invalid JEXL condition in statement: " + statement.getCondition(), e);
-            }
-        }
     }
 }
@@ -0,0 +1,39 @@
+package org.authzen;
+
+import java.util.List;
+
+/**
+ * The identity side of authorization prepared once for a principal, so that it can be evaluated
+ * against many resources: the principal's {@link EffectivePrincipalPolicy}, with its identity and,
+ * per resource type and action, the identity statements whose action and principal patterns match.
+ * Only the resource patterns and conditions of those statements remain to be checked per resource.
+ */
+public final class PreparedPrincipal {
+    private final Principal principal;
+    private final EffectivePrincipalPolicy effectivePolicy;
+
+    PreparedPrincipal(Principal principal, EffectivePrincipalPolicy effectivePolicy) {
+        this.principal = principal;
+        this.effectivePolicy = effectivePolicy;
+    }
+
+    public Principal getPrincipal() {
+        return principal;
+    }
+
+    public EffectivePrincipalPolicy getEffectivePolicy() {
+        return effectivePolicy;
+    }
+
+    PrincipalIdentity getIdentity() {
+        return effectivePolicy.getIdentity();
+    }
+
+    /**
+     * Returns, in declaration order, the identity statements whose action and principal patterns
+     * match the given resource type and action.
+     */
+    List<CompiledStatement> getApplicableStatements(String type, String action) {
+        return effectivePolicy.getApplicableStatements(type, action);
+    }
+}
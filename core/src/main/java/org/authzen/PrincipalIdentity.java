@@ -0,0 +1,65 @@
+package org.authzen;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * The IDs a principal is known by in a request: its own ID and the IDs of its roles.
+ * Computed once per request; literal principal patterns are checked against the
+ * {@linkplain SymbolTable symbols} of the IDs, which are looked up on first use.
+ */
+final class PrincipalIdentity {
+    private final List<String> ids;
+    /** The resolved symbols; an identity can be cached and shared, so it is replaced as a whole. */
+    private volatile Symbols symbols;
+
+    PrincipalIdentity(Principal principal) {
+        List<Role> roles = principal.getRoles();
+        this.ids = new ArrayList<>(roles.size() + 1);
+        ids.add(CompiledPattern.normalize(principal.getId()));
+        for (Role role : roles) {
+            ids.add(CompiledPattern.normalize(role.getId()));
+        }
+    }
+
+    List<String> getIds() {
+        return ids;
+    }
+
+    /**
+     * Returns the distinct symbols of the IDs in ascending order, leaving out IDs no compiled policy uses.
+     */
+    int[] getSymbols() {
+        Symbols current = symbols;
+        if (current == null || current.generation != SymbolTable.generation()) {
+            current = resolve();
+            symbols = current;
+        }
+        return current.symbols;
+    }
+
+    private Symbols resolve() {
+        int generation = SymbolTable.generation();
+        int[] resolved = new int[ids.size()];
+        int count = 0;
+        for (String id : ids) {
+            int symbol = SymbolTable.lookup(id);
+            if (symbol != SymbolTable.UNKNOWN) {
+                resolved[count++] = symbol;
+            }
+        }
+        int[] distinct = Arrays.stream(resolved, 0, count).sorted().distinct().toArray();
+        return new Symbols(generation, distinct);
+    }
+
+    private static final class Symbols {
+        private final int generation;
+        private final int[] symbols;
+
+        private Symbols(int generation, int[] symbols) {
+            this.generation = generation;
+            this.symbols = symbols;
+        }
+    }
+}
@@ -0,0 +1,87 @@
+package org.authzen;
+
+import java.util.Arrays;
+import java.util.BitSet;
+
+/**
+ * Prefix trie over the literal prefixes of resource patterns. Each statement is attached to the
+ * node of the literal prefix of every one of its resource patterns, so the statements that can
+ * match a resource ID are found by walking the ID once, whatever the number of statements.
+ * Wildcard tails are not part of the trie; candidates still have to be matched against their patterns.
+ */
+final class ResourcePatternTrie {
+    private final Node root = new Node();
+    private final int statementCount;
+
+    ResourcePatternTrie(int statementCount) {
+        this.statementCount = statementCount;
+    }
+
+    void add(String literalPrefix, int ordinal) {
+        Node node = root;
+        for (int i = 0; i < literalPrefix.length(); i++) {
+            node = node.childOrCreate(literalPrefix.charAt(i));
+        }
+        node.addOrdinal(ordinal);
+    }
+
+    /**
+     * Returns the ordinals of the statements with a resource pattern whose literal prefix is a
+     * prefix of the given normalized resource ID.
+     */
+    BitSet candidates(String resourceId) {
+        BitSet candidates = new BitSet(statementCount);
+        Node node = root;
+        int i = 0;
+        while (node != null) {
+            for (int ordinal : node.ordinals) {
+                candidates.set(ordinal);
+            }
+            node = i < resourceId.length() ? node.child(resourceId.charAt(i++)) : null;
+        }
+        return candidates;
+    }
+
+    private static final class Node {
+        private char[] keys = new char[0];
+        private Node[] children = new Node[0];
+        private int[] ordinals = new int[0];
+
+        Node child(char key) {
+            int index = Arrays.binarySearch(keys, key);
+            return index >= 0 ? children[index] : null;
+        }
+
+        Node childOrCreate(char key) {
+            int index = Arrays.binarySearch(keys, key);
+            if (index >= 0) {
+                return children[index];
+            }
+            int insertAt = -index - 1;
+            Node child = new Node();
+            keys = insert(keys, insertAt, key);
+            Node[] grown = new Node[children.length + 1];
+            System.arraycopy(children, 0, grown, 0, insertAt);
+            grown[insertAt] = child;
+            System.arraycopy(children, insertAt, grown, insertAt + 1, children.length - insertAt);
+            children = grown;
+            return child;
+        }
+
+        void addOrdinal(int ordinal) {
+            if (ordinals.length > 0 && ordinals[ordinals.length - 1] == ordinal) {
+                return;
+            }
+            ordinals = Arrays.copyOf(ordinals, ordinals.length + 1);
+            ordinals[ordinals.length - 1] = ordinal;
+        }
+
+        private static char[] insert(char[] array, int index, char value) {
+            char[] grown = new char[array.length + 1];
+            System.arraycopy(array, 0, grown, 0, index);
+            grown[index] = value;
+            System.arraycopy(array, index, grown, index + 1, array.length - index);
+            return grown;
+        }
+    }
+}
@@ -17,4 +17,6 @@ public class Statement {
     @Builder.Default
     List<String> resources = List.of();
     String condition;
+    /** The {@link ConditionLanguage} the condition is written in; {@code null} for JEXL. */
+    String conditionLanguage;
 }
@@ -0,0 +1,92 @@
+package org.authzen;
+
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Bit sets over the statements of a large {@link CompiledPolicy}, one per action bucket, per literal
+ * principal or role ID and per effect, so that candidate statements are selected by intersecting bit sets
+ * with the resource candidates of the {@link ResourcePatternTrie}. Candidates still have to be matched
+ * against their patterns.
+ */
+final class StatementBitmaps {
+    private final int statementCount;
+    private final Map<int[], BitSet> actionBuckets = new IdentityHashMap<>();
+    private final SymbolMap<BitSet> byPrincipal;
+    /** The statements with a principal pattern that is not a literal, which may match any principal. */
+    private final BitSet wildcardPrincipals;
+    /** The statements without principal patterns, which apply to everyone in a resource policy. */
+    private final BitSet withoutPrincipals;
+    private final BitSet denies;
+    private final BitSet allows;
+
+    StatementBitmaps(List<CompiledStatement> statements, Collection<int[]> actionBuckets) {
+        this.statementCount = statements.size();
+        for (int[] bucket : actionBuckets) {
+            this.actionBuckets.computeIfAbsent(bucket, StatementBitmaps::toBitSet);
+        }
+        Map<Integer, BitSet> principals = new HashMap<>();
+        this.wildcardPrincipals = new BitSet(statementCount);
+        this.withoutPrincipals = new BitSet(statementCount);
+        this.denies = new BitSet(statementCount);
+        this.allows = new BitSet(statementCount);
+        for (int ordinal = 0; ordinal < statementCount; ordinal++) {
+            CompiledStatement statement = statements.get(ordinal);
+            for (int symbol : statement.getPrincipalSymbols()) {
+                principals.computeIfAbsent(symbol, key -> new BitSet(statementCount)).set(ordinal);
+            }
+            if (statement.getPrincipals().isEmpty()) {
+                withoutPrincipals.set(ordinal);
+            } else if (statement.hasWildcardPrincipals()) {
+                wildcardPrincipals.set(ordinal);
+            }
+            (statement.getEffect() == Effect.DENY ? denies : allows).set(ordinal);
+        }
+        this.byPrincipal = SymbolMap.of(principals);
+    }
+
+    /**
+     * Returns the statements of the action bucket that are also resource candidates and whose principal
+     * patterns can match the identity. The returned set is owned by the caller.
+     */
+    BitSet candidates(int[] actionBucket, BitSet resourceCandidates, PrincipalIdentity identity,
+                      boolean isIdentityPolicy) {
+        BitSet candidates = resourceCandidates;
+        candidates.and(actionBuckets.get(actionBucket));
+        if (candidates.isEmpty()) {
+            return candidates;
+        }
+        BitSet principals = (BitSet) wildcardPrincipals.clone();
+        if (!isIdentityPolicy) {
+            principals.or(withoutPrincipals);
+        }
+        for (int symbol : identity.getSymbols()) {
+            BitSet statements = byPrincipal.get(symbol);
+            if (statements != null) {
+                principals.or(statements);
+            }
+        }
+        candidates.and(principals);
+        return candidates;
+    }
+
+    BitSet getDenies() {
+        return denies;
+    }
+
+    BitSet getAllows() {
+        return allows;
+    }
+
+    private static BitSet toBitSet(int[] ordinals) {
+        BitSet bits = new BitSet();
+        for (int ordinal : ordinals) {
+            bits.set(ordinal);
+        }
+        return bits;
+    }
+}
@@ -1,16 +1,9 @@
 package org.authzen;
 
-import org.apache.commons.jexl3.JexlBuilder;
-import org.apache.commons.jexl3.JexlEngine;
 import java.util.function.UnaryOperator;
+import java.util.regex.PatternSyntaxException;
 
 public class StatementFactory {
-    private static final JexlEngine JEXL = new JexlBuilder()
-            .safe(false)
-            .silent(false)
-            .strict(false)
-            .create();
-
     public static Statement create(UnaryOperator<Statement.StatementBuilder> configurator) {
         Statement.StatementBuilder builder = Statement.builder();
         builder = configurator.apply(builder);
@@ -35,12 +28,16 @@ public class StatementFactory {
             throw new IllegalArgumentException("Resources list cannot be null");
         }
         
-        if (statement.getCondition() != null && !statement.getCondition().isEmpty()) {
-            try {
-                JEXL.createExpression(statement.getCondition());
-            } catch (Exception e) {
-                throw new IllegalArgumentException("Invalid JEXL condition: " + statement.getCondition(), e);
-            }
+        CompiledStatement compiled;
+        try {
+            compiled = PolicyCompiler.getDefault().compile(statement);
+        } catch (PatternSyntaxException e) {
+            throw new IllegalArgumentException("Invalid pattern: " + e.getPattern(), e);
+        }
+        CompiledCondition condition = compiled.getCondition();
+        if (!condition.isValid()) {
+            throw new IllegalArgumentException("Invalid " + condition.describeLanguage() + " condition: " +
+                    statement.getCondition(), condition.getError());
         }
     }
 }
@@ -0,0 +1,60 @@
+package org.authzen;
+
+import java.util.Arrays;
+import java.util.Map;
+
+/**
+ * An immutable map from {@linkplain SymbolTable symbols} to values, looked up without boxing.
+ */
+final class SymbolMap<V> {
+    private static final SymbolMap<?> EMPTY = new SymbolMap<>(Map.of());
+
+    private final int[] keys;
+    private final Object[] values;
+    private final int mask;
+
+    private SymbolMap(Map<Integer, V> entries) {
+        int capacity = Integer.highestOneBit(Math.max(2, entries.size() * 2 - 1)) << 1;
+        this.keys = new int[capacity];
+        this.values = new Object[capacity];
+        this.mask = capacity - 1;
+        Arrays.fill(keys, SymbolTable.UNKNOWN);
+        entries.forEach((symbol, value) -> {
+            int slot = slot(symbol);
+            while (keys[slot] != SymbolTable.UNKNOWN) {
+                slot = (slot + 1) & mask;
+            }
+            keys[slot] = symbol;
+            values[slot] = value;
+        });
+    }
+
+    @SuppressWarnings("unchecked")
+    static <V> SymbolMap<V> of(Map<Integer, V> entries) {
+        return entries.isEmpty() ? (SymbolMap<V>) EMPTY : new SymbolMap<>(entries);
+    }
+
+    /**
+     * Returns the value of the symbol, or {@code null} if there is none.
+     */
+    @SuppressWarnings("unchecked")
+    V get(int symbol) {
+        if (symbol == SymbolTable.UNKNOWN) {
+            return null;
+        }
+        for (int slot = slot(symbol); ; slot = (slot + 1) & mask) {
+            int key = keys[slot];
+            if (key == symbol) {
+                return (V) values[slot];
+            }
+            if (key == SymbolTable.UNKNOWN) {
+                return null;
+            }
+        }
+    }
+
+    private int slot(int symbol) {
+        int hash = symbol * 0x9E3779B9;
+        return (hash ^ hash >>> 16) & mask;
+    }
+}
@@ -0,0 +1,112 @@
+package org.authzen;
+
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Interns the identifiers policies match exactly (action names, resource types, principal and role IDs)
+ * into small integer symbols, so that exact matches compare ints instead of strings.
+ * <p>
+ * Only the literals of compiled policies are interned. Values coming with a request, including
+ * {@link Action}s, are only looked up. The table holds its {@link Symbol}s weakly: compiled patterns
+ * keep the symbols of their literals, and a symbol no compiled policy holds any more is reclaimed
+ * together with its entry, so the table is bounded by the policies in use. Symbol numbers are never
+ * reused, so a stale number matches nothing. A value interned again after its symbol was reclaimed gets
+ * a new number, and policies may be compiled while a request is evaluated, so numbers looked up earlier
+ * are looked up again once the {@linkplain #generation() generation} has changed.
+ */
+final class SymbolTable {
+    static final int UNKNOWN = -1;
+
+    private static final ConcurrentHashMap<String, SymbolReference> SYMBOLS = new ConcurrentHashMap<>();
+    private static final ReferenceQueue<Symbol> RECLAIMED = new ReferenceQueue<>();
+    private static final AtomicInteger NEXT_SYMBOL = new AtomicInteger();
+    /** Incremented after each new symbol is published. */
+    private static final AtomicInteger GENERATION = new AtomicInteger();
+
+    private SymbolTable() {
+    }
+
+    /**
+     * Returns the symbol of the value, which stays interned as long as it is referenced.
+     */
+    static Symbol intern(String value) {
+        purge();
+        while (true) {
+            SymbolReference reference = SYMBOLS.get(value);
+            Symbol symbol = reference != null ? reference.get() : null;
+            if (symbol != null) {
+                return symbol;
+            }
+            Symbol created = new Symbol(NEXT_SYMBOL.getAndIncrement());
+            SymbolReference replacement = new SymbolReference(value, created);
+            if (reference == null
+                    ? SYMBOLS.putIfAbsent(value, replacement) == null
+                    : SYMBOLS.replace(value, reference, replacement)) {
+                GENERATION.incrementAndGet();
+                return created;
+            }
+        }
+    }
+
+    /**
+     * Returns the number of the value's symbol, or {@link #UNKNOWN} if no compiled policy holds one.
+     */
+    static int lookup(String value) {
+        if (value == null) {
+            return UNKNOWN;
+        }
+        SymbolReference reference = SYMBOLS.get(value);
+        Symbol symbol = reference != null ? reference.get() : null;
+        return symbol != null ? symbol.getId() : UNKNOWN;
+    }
+
+    /**
+     * Returns a number that changes whenever a symbol is added. A lookup done after reading it sees
+     * every symbol added before it changed.
+     */
+    static int generation() {
+        return GENERATION.get();
+    }
+
+    /**
+     * Returns the number of entries, including those whose symbol was reclaimed but not yet purged.
+     */
+    static int size() {
+        purge();
+        return SYMBOLS.size();
+    }
+
+    private static void purge() {
+        SymbolReference reclaimed;
+        while ((reclaimed = (SymbolReference) RECLAIMED.poll()) != null) {
+            SYMBOLS.remove(reclaimed.value, reclaimed);
+        }
+    }
+
+    /**
+     * An interned value. Whatever matches by symbol number keeps the symbol, so that it stays interned.
+     */
+    static final class Symbol {
+        private final int id;
+
+        private Symbol(int id) {
+            this.id = id;
+        }
+
+        int getId() {
+            return id;
+        }
+    }
+
+    private static final class SymbolReference extends WeakReference<Symbol> {
+        private final String value;
+
+        private SymbolReference(String value, Symbol symbol) {
+            super(symbol, RECLAIMED);
+            this.value = value;
+        }
+    }
+}
@@ -0,0 +1,10 @@
+package org.authzen;
+
+/**
+ * Implemented by principals and resources that carry attributes read by conditions.
+ * The version must change whenever any of those attributes changes, so that cached results
+ * computed from the old attributes are no longer used.
+ */
+public interface Versioned {
+    long getVersion();
+}
@@ -91,4 +91,77 @@ class AuthZenTest {
         assertFalse(decision.isAllowed());
         assertEquals("No matching allow policies from both identity and resource", decision.getReason());
     }
+
+    @Test
+    void authorizeAllReturnsDecisionsInResourceOrder() {
+        Statement principalStatement = Statement.builder()
+                .effect(Effect.ALLOW)
+                .principals(List.of("user-1"))
+                .actions(List.of("document:read"))
+                .resources(List.of("doc-*"))
+                .build();
+        Statement resourceStatement = Statement.builder()
+                .effect(Effect.ALLOW)
+                .principals(List.of("*"))
+                .actions(List.of("*:*"))
+                .resources(List.of("*"))
+                .build();
+        Policy resourcePolicy = Policy.builder().statements(List.of(resourceStatement)).build();
+        Principal principal = new Principal("user-1", List.of(),
+                Policy.builder().statements(List.of(principalStatement)).build());
+
+        List<Decision> decisions = authZen.authorizeAll(principal, List.of(
+                new Resource("doc-1", "document", resourcePolicy),
+                new Resource("file-1", "document", resourcePolicy),
+                new Resource("doc-2", "document")), "read", null);
+
+        assertEquals(3, decisions.size());
+        assertTrue(decisions.get(0).isAllowed());
+        assertFalse(decisions.get(1).isAllowed());
+        assertFalse(decisions.get(2).isAllowed());
+    }
+
+    @Test
+    void authorizesInternedActionsLikeTheirNames() {
+        Statement statement = Statement.builder()
+                .effect(Effect.ALLOW)
+                .principals(List.of("user-1"))
+                .actions(List.of("document:read"))
+                .resources(List.of("*"))
+                .build();
+        Policy policy = Policy.builder().statements(List.of(statement)).build();
+        Principal principal = new Principal("user-1", List.of(), policy);
+        Resource resource = new Resource("doc-123", "document", policy);
+
+        assertEquals(new Action("read"), new Action("read"));
+        assertTrue(authZen.authorize(principal, resource, new Action("read"), null).isAllowed());
+        assertTrue(authZen.isAllowed(principal, resource, new Action("read"), null));
+        assertFalse(authZen.isAllowed(principal, resource, new Action("write"), null));
+    }
+
+    @Test
+    void matchesTypesAndRolesFirstInternedByTheResourcePolicy() {
+        // the identity policy is compiled first and does not name the type or the role
+        String suffix = Long.toHexString(System.nanoTime());
+        Statement identityStatement = Statement.builder()
+                .effect(Effect.ALLOW)
+                .principals(List.of("user-1"))
+                .actions(List.of("*:read"))
+                .resources(List.of("*"))
+                .build();
+        Statement resourceStatement = Statement.builder()
+                .effect(Effect.ALLOW)
+                .principals(List.of("role-" + suffix))
+                .actions(List.of("type-" + suffix + ":read"))
+                .resources(List.of("*"))
+                .build();
+        Principal principal = new Principal("user-1", List.of(new Role("role-" + suffix, "Role")),
+                Policy.builder().statements(List.of(identityStatement)).build());
+        Resource resource = new Resource("item-1", "type-" + suffix,
+                Policy.builder().statements(List.of(resourceStatement)).build());
+
+        assertTrue(authZen.authorizeAll(principal, List.of(resource), "read", null).get(0).isAllowed());
+        assertTrue(authZen.authorize(principal, resource, "read").isAllowed());
+        assertFalse(authZen.authorize(principal, resource, "write").isAllowed());
+    }
 }
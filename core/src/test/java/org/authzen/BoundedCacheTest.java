@@ -0,0 +1,90 @@
+package org.authzen;
+
+import org.junit.jupiter.api.Test;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class BoundedCacheTest {
+
+    @Test
+    void evictsInInsertionOrderSkippingRemovedEntries() {
+        BoundedCache<String, Integer> cache = new BoundedCache<>(3);
+        cache.put("a", 1);
+        cache.put("b", 2);
+        cache.put("c", 3);
+        cache.remove("a");
+        cache.put("b", 20);
+        cache.put("d", 4);
+        cache.put("a", 5);
+
+        assertNull(cache.getIfPresent("b"));
+        assertEquals(3, cache.getIfPresent("c"));
+        assertEquals(4, cache.getIfPresent("d"));
+        assertEquals(5, cache.getIfPresent("a"));
+        assertEquals(new CacheStats(3, 1, 1, 3), cache.stats());
+    }
+
+    @Test
+    void invalidAndMatchingEntriesLeaveTheInsertionOrder() {
+        BoundedCache<Integer, Integer> cache = new BoundedCache<>(10);
+        for (int i = 0; i < 10; i++) {
+            cache.put(i, i);
+        }
+        cache.removeIf((key, value) -> key % 2 == 0);
+        assertNull(cache.getIfPresent(1, value -> false));
+        assertEquals(4, cache.size());
+
+        for (int i = 10; i < 16; i++) {
+            cache.put(i, i);
+        }
+        assertEquals(10, cache.size());
+        assertEquals(0, cache.stats().getEvictionCount());
+        cache.put(16, 16);
+        assertNull(cache.getIfPresent(3));
+        assertEquals(5, cache.getIfPresent(5));
+    }
+
+    @Test
+    void concurrentWritersKeepTheBound() throws Exception {
+        BoundedCache<Integer, Integer> cache = new BoundedCache<>(100);
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int t = 0; t < 4; t++) {
+                int offset = t;
+                futures.add(executor.submit(() -> {
+                    for (int i = 0; i < 10_000; i++) {
+                        int key = i * 4 + offset;
+                        if (i % 3 == 0) {
+                            cache.get(key, k -> k);
+                        } else {
+                            cache.put(key, key);
+                        }
+                        if (i % 7 == 0) {
+                            cache.remove(key - 4);
+                        }
+                    }
+                }));
+            }
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } finally {
+            executor.shutdown();
+        }
+
+        assertEquals(100, cache.size());
+        int[] count = {0};
+        cache.forEach((key, value) -> count[0]++);
+        assertEquals(100, count[0]);
+        for (int i = 0; i < 100; i++) {
+            cache.put(-1 - i, i);
+        }
+        cache.forEach((key, value) -> assertTrue(key < 0));
+    }
+}
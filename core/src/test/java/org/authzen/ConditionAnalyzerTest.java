@@ -0,0 +1,74 @@
+package org.authzen;
+
+import org.junit.jupiter.api.Test;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ConditionAnalyzerTest {
+
+    private final ConditionEvaluator evaluator = new ConditionEvaluator();
+
+    private ConditionDependencies analyze(String condition) {
+        return evaluator.compile(condition).getDependencies();
+    }
+
+    @Test
+    void reportsRootsAndPropertyPaths() {
+        ConditionDependencies dependencies = analyze("principal.department == 'eng' && context.a.b > 1");
+
+        assertEquals(Set.of("principal", "context"), dependencies.getRoots());
+        assertEquals(Set.of(List.of("principal", "department"), List.of("context", "a", "b")),
+                dependencies.getPaths());
+        assertTrue(dependencies.readsPrincipal());
+        assertFalse(dependencies.readsResource());
+        assertFalse(dependencies.readsAction());
+        assertTrue(dependencies.isDeterministic());
+    }
+
+    @Test
+    void pathsStopAtDynamicAccessAndMethodCalls() {
+        assertEquals(Set.of(List.of("context"), List.of("principal", "id")),
+                analyze("context[principal.id] == 1").getPaths());
+        assertEquals(Set.of(List.of("principal")), analyze("principal.getRoles().size() > 0").getPaths());
+    }
+
+    @Test
+    void distinguishesAttributesFromIdentifiers() {
+        assertFalse(analyze("principal.id == 'user-1' && resource.type == 'document'").readsPrincipalAttributes());
+        assertFalse(analyze("resource.id == 'doc-1' && resource.type == 'document'").readsResourceAttributes());
+        assertTrue(analyze("principal.department == 'eng'").readsPrincipalAttributes());
+        assertTrue(analyze("resource.owner == principal.id").readsResourceAttributes());
+        assertTrue(analyze("resource != null").readsResourceAttributes());
+    }
+
+    @Test
+    void callsWithPossibleSideEffectsAreNonDeterministic() {
+        assertTrue(analyze("context.items.size() > 2 && action.startsWith('re')").isDeterministic());
+        assertTrue(analyze("principal.getId() == 'user-1'").isDeterministic());
+        assertFalse(analyze("new('java.util.Date') != null").isDeterministic());
+        assertFalse(analyze("math:random() > 0.5").isDeterministic());
+        assertFalse(analyze("context.items.remove(0) != null").isDeterministic());
+        assertFalse(analyze("context.count += 1").isDeterministic());
+    }
+
+    @Test
+    void onlyGettersOfTheRequestModelArePure() {
+        assertTrue(analyze("resource.getType() == 'document' && principal.getRoles().isEmpty()").isDeterministic());
+        assertFalse(analyze("principal.getNextToken() != null").isDeterministic());
+        assertFalse(analyze("context.clock.isAfterNow()").isDeterministic());
+    }
+
+    @Test
+    void literalsAndOperatorsAreNotCalls() {
+        assertTrue(analyze("context.name == 'remove(0)' && context.id =~ ['a', 'b'] && "
+                + "context.code =~ ~/a(b)/ && size(context.items) > 0 && context.x != 1").isDeterministic());
+    }
+
+    @Test
+    void missingAndInvalidConditionsReadNothing() {
+        assertSame(ConditionDependencies.NONE, evaluator.compile(null).getDependencies());
+        assertSame(ConditionDependencies.NONE, evaluator.compile("invalid jexl $$$ syntax").getDependencies());
+    }
+}
@@ -0,0 +1,198 @@
+package org.authzen;
+
+import org.apache.commons.jexl3.JexlBuilder;
+import org.apache.commons.jexl3.JexlContext;
+import org.apache.commons.jexl3.JexlEngine;
+import org.apache.commons.jexl3.JexlExpression;
+import org.apache.commons.jexl3.MapContext;
+import org.junit.jupiter.api.Test;
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ConditionCompilerTest {
+
+    private static final JexlEngine JEXL = new JexlBuilder().safe(false).silent(false).strict(false).create();
+
+    private static final List<String> COMPILED = List.of(
+            "context.time == 'business_hours'",
+            "context.level > 3 && context.level <= 10",
+            "context.level >= 3.5 || context.flag",
+            "context.level < '5'",
+            "context.name != null && !context.flag",
+            "context.name =~ ['alice', 'bob']",
+            "context.level =~ [1, 2, 3]",
+            "context.level !~ [1.0, 2]",
+            "context.name =~ 'a.*'",
+            "context.name =^ 'al' && context.name =$ 'ce'",
+            "context.name !^ 'bo' || context.name !$ 'b'",
+            "context.nested.inner.value == 42",
+            "context.nested['inner']['value'] == 42",
+            "context.list[1] == 'b'",
+            "context.list[7] == null",
+            "context.missing.deeper == null",
+            "context.map.empty",
+            "context.big == 10",
+            "context.time && context.flag",
+            "context.flag || context.time",
+            "(context.level > 1) == true",
+            "principal.id == 'user-1'",
+            "resource.type == 'document' && action == 'read'",
+            "principal != null && resource != null",
+            "context == null",
+            "!context.level",
+            "true",
+            "null == null");
+
+    private static final List<String> NOT_COMPILED = List.of(
+            "context.name.startsWith('a')",
+            "size(context.list) > 1",
+            "context.level + 1 > 2",
+            "other.value == 1",
+            "context[context.key] == 1",
+            "context.name =~ context.names",
+            "new('java.util.Date') != null",
+            "context.level > 1 ? true : false");
+
+    private static List<Map<String, Object>> contexts() {
+        List<Map<String, Object>> contexts = new ArrayList<>();
+        Map<String, Object> full = new HashMap<>();
+        full.put("time", "business_hours");
+        full.put("level", 5);
+        full.put("flag", true);
+        full.put("name", "alice");
+        full.put("nested", Map.of("inner", Map.of("value", 42)));
+        full.put("list", List.of("a", "b", "c"));
+        full.put("map", new HashMap<>());
+        full.put("big", new BigDecimal("10.0"));
+        contexts.add(full);
+
+        Map<String, Object> other = new HashMap<>();
+        other.put("time", "night");
+        other.put("level", 2L);
+        other.put("flag", "false");
+        other.put("name", "bob");
+        other.put("nested", Map.of("inner", Map.of("value", "42")));
+        other.put("list", List.of());
+        other.put("map", Map.of("empty", "no"));
+        other.put("big", 10.0d);
+        contexts.add(other);
+
+        Map<String, Object> nulls = new HashMap<>();
+        nulls.put("level", null);
+        nulls.put("name", null);
+        nulls.put("nested", Map.of());
+        contexts.add(nulls);
+
+        Map<String, Object> odd = new HashMap<>();
+        odd.put("level", "3.5");
+        odd.put("flag", 0);
+        odd.put("name", 7);
+        odd.put("time", "");
+        odd.put("list", List.of(1));
+        contexts.add(odd);
+        return contexts;
+    }
+
+    private static List<JexlContext> requests() {
+        Principal principal = new Principal("user-1");
+        Resource resource = new Resource("doc-1", "document");
+        List<JexlContext> requests = new ArrayList<>();
+        for (Map<String, Object> context : contexts()) {
+            requests.add(new EvaluationContext(principal, resource, "read", context));
+            MapContext map = new MapContext();
+            map.set("principal", Map.of("id", "user-1"));
+            map.set("resource", Map.of("type", "document"));
+            map.set("action", "write");
+            map.set("context", context);
+            requests.add(map);
+        }
+        requests.add(new EvaluationContext(principal, resource, "read", null));
+        return requests;
+    }
+
+    @Test
+    void compilerIsPinnedToTheJexlReleaseOnTheClassPath() {
+        // upgrading JEXL silently turns the compiler off; check its syntax tree use, then bump the version
+        assertEquals(ConditionCompiler.JEXL_VERSION, ConditionCompiler.jexlVersion(),
+                "ConditionCompiler reads JEXL internals and must be reviewed for this JEXL release");
+    }
+
+    @Test
+    void compiledConditionsEvaluateLikeTheInterpreter() {
+        ConditionCompiler compiler = new ConditionCompiler(JEXL);
+        for (String condition : COMPILED) {
+            JexlExpression expression = JEXL.createExpression(condition);
+            ConditionCompiler.Evaluator compiled = compiler.compile(expression);
+            assertNotNull(compiled, condition);
+
+            for (JexlContext request : requests()) {
+                Object expected;
+                try {
+                    expected = expression.evaluate(request);
+                } catch (Exception e) {
+                    expected = e;
+                }
+                Object actual;
+                try {
+                    actual = compiled.evaluate(request);
+                } catch (ConditionCompiler.Fallback e) {
+                    continue;
+                } catch (Exception e) {
+                    actual = e;
+                }
+                if (expected instanceof Exception || actual instanceof Exception) {
+                    assertInstanceOf(Exception.class, actual, condition + " failed in the interpreter only");
+                    assertInstanceOf(Exception.class, expected, condition + " failed when compiled only");
+                    continue;
+                }
+                assertTrue(Objects.deepEquals(expected, actual),
+                        condition + ": expected " + expected + " but was " + actual);
+            }
+        }
+    }
+
+    @Test
+    void unsupportedConditionsAreNotCompiled() {
+        ConditionCompiler compiler = new ConditionCompiler(JEXL);
+        for (String condition : NOT_COMPILED) {
+            assertNull(compiler.compile(JEXL.createExpression(condition)), condition);
+        }
+    }
+
+    @Test
+    void evaluatorFallsBackToTheInterpreter() {
+        ConditionEvaluator compiling = new ConditionEvaluator(100, true);
+        ConditionEvaluator interpreting = new ConditionEvaluator(100);
+        List<String> conditions = new ArrayList<>(COMPILED);
+        conditions.addAll(NOT_COMPILED);
+
+        for (String condition : conditions) {
+            assertEquals(COMPILED.contains(condition), compiling.compile(condition).isCompiled(), condition);
+            assertFalse(interpreting.compile(condition).isCompiled());
+            for (JexlContext request : requests()) {
+                assertEquals(interpreting.evaluate(interpreting.compile(condition), request),
+                        compiling.evaluate(compiling.compile(condition), request), condition);
+            }
+        }
+    }
+
+    @Test
+    void conditionsFailingOnTheCompiledPathAreInterpretedFromThenOn() {
+        ConditionEvaluator compiling = new ConditionEvaluator(100, true);
+        CompiledCondition condition = compiling.compile("context.level < [1]");
+        assertTrue(condition.isCompiled());
+
+        JexlContext request = new EvaluationContext(new Principal("user-1"), new Resource("doc-1", "document"),
+                "read", Map.of("level", 5));
+        assertEquals(ConditionResult.ERROR, compiling.check(condition, request));
+        assertFalse(condition.isCompiled());
+        assertEquals(ConditionResult.ERROR, compiling.check(condition, request));
+        assertEquals(2, condition.getErrorCount());
+    }
+}
@@ -0,0 +1,98 @@
+package org.authzen;
+
+import org.apache.commons.jexl3.MapContext;
+import org.junit.jupiter.api.Test;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ConditionEvaluatorTest {
+
+    @Test
+    void emptyConditionIsTrue() {
+        ConditionEvaluator evaluator = new ConditionEvaluator();
+
+        assertTrue(evaluator.evaluate((String) null, Map.of()));
+        assertTrue(evaluator.evaluate("", Map.of()));
+    }
+
+    @Test
+    void invalidConditionIsFalse() {
+        ConditionEvaluator evaluator = new ConditionEvaluator();
+
+        assertFalse(evaluator.evaluate("invalid jexl $$$ syntax", Map.of()));
+    }
+
+    @Test
+    void conditionIsParsedOncePerDistinctText() {
+        ConditionEvaluator evaluator = new ConditionEvaluator();
+        String condition = "context.time == 'business_hours'";
+
+        assertTrue(evaluator.evaluate(condition, Map.of("context", Map.of("time", "business_hours"))));
+        assertFalse(evaluator.evaluate(condition, Map.of("context", Map.of("time", "after_hours"))));
+
+        CacheStats stats = evaluator.getCacheStats();
+        assertEquals(1, stats.getMissCount());
+        assertEquals(1, stats.getHitCount());
+        assertEquals(1, stats.getSize());
+    }
+
+    @Test
+    void cacheEvictsOldestConditionsBeyondMaximumSize() {
+        ConditionEvaluator evaluator = new ConditionEvaluator(2);
+
+        evaluator.evaluate("1 == 1", Map.of());
+        evaluator.evaluate("2 == 2", Map.of());
+        evaluator.evaluate("3 == 3", Map.of());
+
+        CacheStats stats = evaluator.getCacheStats();
+        assertEquals(3, stats.getMissCount());
+        assertEquals(1, stats.getEvictionCount());
+        assertEquals(2, stats.getSize());
+    }
+
+    @Test
+    void evaluationContextResolvesRequestFields() {
+        ConditionEvaluator evaluator = new ConditionEvaluator();
+        EvaluationContext context = new EvaluationContext(new Principal("user-1"), new Resource("doc-1", "document"),
+                "read", Map.of("time", "business_hours"));
+
+        assertTrue(evaluator.evaluate(evaluator.compile("action == 'read' && context.time == 'business_hours'"), context));
+        assertTrue(evaluator.evaluate(evaluator.compile("principal.id == 'user-1' && resource.type == 'document'"), context));
+        assertEquals("document:read", context.getFullAction());
+    }
+
+    @Test
+    void assignmentsDoNotLeakBetweenConditions() {
+        ConditionEvaluator evaluator = new ConditionEvaluator();
+        Principal principal = new Principal("user-1", List.of(), null);
+        EvaluationContext context = new EvaluationContext(principal, new Resource("doc-1", "document"), "read", null);
+
+        assertTrue(evaluator.evaluate(evaluator.compile("(action = 'write') == 'write'"), context));
+        context.clearAssignments();
+
+        assertTrue(evaluator.evaluate(evaluator.compile("action == 'read'"), context));
+    }
+
+    @Test
+    void failuresAreReportedAsErrorsAndCountedPerCondition() {
+        for (ConditionEvaluator evaluator : List.of(new ConditionEvaluator(), new ConditionEvaluator(100, true))) {
+            CompiledCondition failing = evaluator.compile("context.level > 'high'");
+            CompiledCondition invalid = evaluator.compile("invalid jexl $$$ syntax");
+            CompiledCondition passing = evaluator.compile("context.level > 3");
+            Map<String, Object> context = Map.of("context", Map.of("level", 5));
+
+            assertEquals(ConditionResult.ERROR, evaluator.check(failing, new MapContext(context)));
+            assertEquals(ConditionResult.ERROR, evaluator.check(failing, new MapContext(context)));
+            assertEquals(ConditionResult.ERROR, evaluator.check(invalid, new MapContext(context)));
+            assertEquals(ConditionResult.TRUE, evaluator.check(passing, new MapContext(context)));
+            assertFalse(evaluator.evaluate(failing, context));
+
+            assertEquals(3, failing.getErrorCount());
+            assertEquals(1, invalid.getErrorCount());
+            assertEquals(0, passing.getErrorCount());
+            assertEquals(List.of(failing, invalid), evaluator.getFailingConditions());
+        }
+    }
+}
@@ -0,0 +1,109 @@
+package org.authzen;
+
+import org.junit.jupiter.api.Test;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ConditionResultCacheTest {
+
+    private final ConditionResultCache cache = new ConditionResultCache();
+    private final AuthorizationEngine engine = new AuthorizationEngine(new PolicyCompiler(),
+            new EffectivePolicyCache(new PolicyCompiler()), cache);
+
+    private static Policy policy(String condition) {
+        return Policy.builder()
+                .statements(List.of(Statement.builder()
+                        .effect(Effect.ALLOW)
+                        .principals(List.of("*"))
+                        .actions(List.of("document:read"))
+                        .resources(List.of("doc-*"))
+                        .condition(condition)
+                        .build()))
+                .build();
+    }
+
+    private static class VersionedPrincipal extends Principal implements Versioned {
+        private final long version;
+
+        VersionedPrincipal(String id, Policy policy, long version) {
+            super(id, List.of(), policy);
+            this.version = version;
+        }
+
+        @Override
+        public long getVersion() {
+            return version;
+        }
+    }
+
+    private static class VersionedResource extends Resource implements Versioned {
+        private final long version;
+
+        VersionedResource(String id, Policy policy, long version) {
+            super(id, "document", policy);
+            this.version = version;
+        }
+
+        @Override
+        public long getVersion() {
+            return version;
+        }
+    }
+
+    @Test
+    void principalOnlyConditionIsEvaluatedOncePerPrincipalVersion() {
+        Principal principal = new VersionedPrincipal("user-1", policy("principal != null"), 1);
+
+        for (int i = 0; i < 3; i++) {
+            assertTrue(engine.evaluate(principal, new Resource("doc-" + i, "document", policy(null)), "read", null)
+                    .isAllowed());
+        }
+        assertEquals(1, cache.getCacheStats().getMissCount());
+        assertEquals(2, cache.getCacheStats().getHitCount());
+
+        engine.evaluate(new VersionedPrincipal("user-1", policy("principal != null"), 2),
+                new Resource("doc-1", "document", policy(null)), "read", null);
+        assertEquals(2, cache.getCacheStats().getMissCount());
+    }
+
+    @Test
+    void resourceOnlyConditionIsEvaluatedOncePerResourceVersion() {
+        Resource resource = new VersionedResource("doc-1", policy("resource != null"), 1);
+
+        for (int i = 0; i < 3; i++) {
+            assertTrue(engine.evaluate(new Principal("user-" + i, List.of(), policy(null)), resource, "read", null)
+                    .isAllowed());
+        }
+        assertEquals(1, cache.getCacheStats().getMissCount());
+        assertEquals(2, cache.getCacheStats().getHitCount());
+    }
+
+    @Test
+    void conditionsReadingOtherInputsOrUnversionedEntitiesAreNotMemoized() {
+        Principal versioned = new VersionedPrincipal("user-1",
+                policy("principal != null && context.time == 'business_hours'"), 1);
+        Principal unversioned = new Principal("user-2", List.of(), policy("principal != null"));
+        Resource resource = new Resource("doc-1", "document", policy(null));
+
+        assertTrue(engine.evaluate(versioned, resource, "read", Map.of("time", "business_hours")).isAllowed());
+        assertFalse(engine.evaluate(versioned, resource, "read", Map.of("time", "night")).isAllowed());
+        assertTrue(engine.evaluate(unversioned, resource, "read", null).isAllowed());
+
+        assertEquals(0, cache.getCacheStats().getSize());
+    }
+
+    @Test
+    void invalidationDropsResultsOfTheEntity() {
+        Principal principal = new VersionedPrincipal("user-1", policy("principal != null"), 1);
+        Resource resource = new VersionedResource("doc-1", policy("resource != null"), 1);
+        engine.evaluate(principal, resource, "read", null);
+        assertEquals(2, cache.getCacheStats().getSize());
+
+        cache.invalidateResource("doc-1");
+        assertEquals(1, cache.getCacheStats().getSize());
+        cache.invalidatePrincipal("user-1");
+        assertEquals(0, cache.getCacheStats().getSize());
+    }
+}
@@ -0,0 +1,109 @@
+package org.authzen;
+
+import org.apache.commons.jexl3.introspection.JexlPropertyGet;
+import org.junit.jupiter.api.Test;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ConditionUberspectTest {
+
+    public static class Employee extends Principal {
+        private final String department;
+        private final boolean contractor;
+        private int promotions;
+
+        public Employee(String id, String department, boolean contractor, List<Role> roles) {
+            super(id, roles, null);
+            this.department = department;
+            this.contractor = contractor;
+        }
+
+        public String getDepartment() {
+            return department;
+        }
+
+        public boolean isContractor() {
+            return contractor;
+        }
+
+        public boolean promote() {
+            promotions++;
+            return true;
+        }
+    }
+
+    public static class Document extends Resource implements Attributed {
+        private final Map<String, Object> attributes;
+
+        public Document(String id, Map<String, Object> attributes) {
+            super(id, "document");
+            this.attributes = attributes;
+        }
+
+        @Override
+        public Object getAttribute(String name) {
+            return attributes.get(name);
+        }
+    }
+
+    private final ConditionEvaluator evaluator = new ConditionEvaluator();
+
+    private boolean evaluate(String condition, Principal principal, Resource resource) {
+        return evaluator.evaluate(evaluator.compile(condition),
+                new EvaluationContext(principal, resource, "read", Map.of()));
+    }
+
+    @Test
+    void domainPropertiesAreReadThroughGetters() {
+        Role manager = new Role("manager", "Manager", null, Map.of("level", 3));
+        Employee employee = new Employee("user-1", "engineering", false, List.of(manager));
+        Resource resource = new Resource("doc-1", "document");
+
+        assertTrue(evaluate("principal.id == 'user-1' && resource.type == 'document'", employee, resource));
+        assertTrue(evaluate("principal.department == 'engineering' && !principal.contractor", employee, resource));
+        assertTrue(evaluate("principal.roles[0].name == 'Manager' && principal.roles[0].attributes.level > 2",
+                employee, resource));
+        assertTrue(evaluate("principal['department'] == 'engineering'", employee, resource));
+    }
+
+    @Test
+    void attributesAreReadWhenThereIsNoGetter() {
+        Document document = new Document("doc-1", Map.of("classification", "secret"));
+
+        assertTrue(evaluate("resource.classification == 'secret' && resource.id == 'doc-1'",
+                new Principal("user-1"), document));
+        assertFalse(evaluate("resource.owner != null", new Principal("user-1"), document));
+    }
+
+    @Test
+    void accessorsAreResolvedOncePerClassAndProperty() throws Exception {
+        ConditionUberspect uberspect = new ConditionUberspect();
+        Employee employee = new Employee("user-1", "engineering", true, List.of());
+
+        JexlPropertyGet getter = uberspect.getPropertyGet(employee, "department");
+
+        assertSame(getter, uberspect.getPropertyGet(new Employee("user-2", "sales", false, List.of()), "department"));
+        assertEquals("engineering", getter.invoke(employee));
+        assertEquals(true, uberspect.getPropertyGet(employee, "contractor").invoke(employee));
+        assertTrue(getter.tryFailed(getter.tryInvoke(new Principal("user-1"), "department")));
+        assertNull(uberspect.getPropertyGet(employee, "promote"));
+    }
+
+    @Test
+    void sandboxAllowsOnlyGettersAndNoConstruction() {
+        Employee employee = new Employee("user-1", "engineering", false, List.of());
+        Resource resource = new Resource("doc-1", "document");
+
+        assertFalse(evaluate("principal.promote()", employee, resource));
+        assertEquals(0, employee.promotions);
+        assertTrue(evaluate("principal.getDepartment() == 'engineering'", employee, resource));
+        assertFalse(evaluate("new('java.util.Date') != null", employee, resource));
+        assertFalse(evaluate("principal.class.forName('java.lang.Runtime') != null", employee, resource));
+
+        Principal withPolicy = new Principal("user-2", List.of(), Policy.builder().statements(List.of()).build());
+        assertTrue(evaluate("principal.policy != null", withPolicy, resource));
+        assertFalse(evaluate("principal.policy.statements != null", withPolicy, resource));
+    }
+}
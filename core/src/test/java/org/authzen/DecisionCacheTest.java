@@ -0,0 +1,194 @@
+package org.authzen;
+
+import org.junit.jupiter.api.Test;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class DecisionCacheTest {
+
+    private final AtomicLong ticker = new AtomicLong();
+    private final DecisionCache cache = new DecisionCache(100, Duration.ofSeconds(10), ticker::get);
+    private final AuthZen authZen = new AuthZen(new AuthorizationEngine(new PolicyCompiler()),
+            EvaluationMode.FULL, cache);
+
+    private static Policy policy(String condition) {
+        return Policy.builder()
+                .statements(List.of(Statement.builder()
+                        .effect(Effect.ALLOW)
+                        .principals(List.of("*"))
+                        .actions(List.of("document:read"))
+                        .resources(List.of("doc-*"))
+                        .condition(condition)
+                        .build()))
+                .build();
+    }
+
+    private static class VersionedPrincipal extends Principal implements Versioned {
+        private final long version;
+
+        VersionedPrincipal(String id, Policy policy, long version) {
+            super(id, List.of(), policy);
+            this.version = version;
+        }
+
+        @Override
+        public long getVersion() {
+            return version;
+        }
+    }
+
+    private static class VersionedResource extends Resource implements Versioned {
+        private final long version;
+
+        VersionedResource(String id, Policy policy, long version) {
+            super(id, "document", policy);
+            this.version = version;
+        }
+
+        @Override
+        public long getVersion() {
+            return version;
+        }
+    }
+
+    @Test
+    void repeatedRequestIsServedFromCache() {
+        Principal principal = new Principal("user-1", List.of(), policy(null));
+        Resource resource = new Resource("doc-1", "document", policy(null));
+
+        Decision first = authZen.authorize(principal, resource, "read");
+        Decision second = authZen.authorize(principal, resource, "read");
+
+        assertTrue(first.isAllowed());
+        assertSame(first, second);
+        assertEquals(1, cache.getCacheStats().getHitCount());
+        assertNotSame(first, authZen.authorize(principal, resource, "write"));
+    }
+
+    @Test
+    void entriesExpireAfterTtl() {
+        Principal principal = new Principal("user-1", List.of(), policy(null));
+        Resource resource = new Resource("doc-1", "document", policy(null));
+        Decision first = authZen.authorize(principal, resource, "read");
+
+        ticker.addAndGet(Duration.ofSeconds(10).toNanos());
+
+        assertNotSame(first, authZen.authorize(principal, resource, "read"));
+        assertEquals(0, cache.getCacheStats().getHitCount());
+    }
+
+    @Test
+    void policyChangesAreNeverServedStale() {
+        Principal principal = new Principal("user-1", List.of(), policy(null));
+        assertTrue(authZen.authorize(principal, new Resource("doc-1", "document", policy(null)), "read").isAllowed());
+
+        assertFalse(authZen.authorize(principal, new Resource("doc-1", "document", null), "read").isAllowed());
+    }
+
+    @Test
+    void decisionsReadingOnlyKeyedInputsAreCached() {
+        Principal principal = new Principal("user-1", List.of(), policy("context.time == 'business_hours'"));
+        Resource resource = new Resource("doc-1", "document", policy("resource.type == 'document'"));
+
+        Decision first = authZen.authorize(principal, resource, "read", Map.of("time", "business_hours"));
+
+        assertSame(first, authZen.authorize(principal, resource, "read", Map.of("time", "business_hours")));
+        assertFalse(authZen.authorize(principal, resource, "read", Map.of("time", "night")).isAllowed());
+    }
+
+    @Test
+    void decisionsAreKeyedOnTheContextValuesConditionsRead() {
+        Principal principal = new Principal("user-1", List.of(), policy("context.request.time == 'business_hours'"));
+        Resource resource = new Resource("doc-1", "document", policy(null));
+
+        Decision first = authZen.authorize(principal, resource, "read",
+                Map.of("request", Map.of("time", "business_hours", "id", 1)));
+
+        assertSame(first, authZen.authorize(principal, resource, "read",
+                Map.of("request", Map.of("time", "business_hours", "id", 2), "trace", "abc")));
+        assertEquals(1, cache.getCacheStats().getHitCount());
+        assertFalse(authZen.authorize(principal, resource, "read",
+                Map.of("request", Map.of("time", "night", "id", 3))).isAllowed());
+    }
+
+    @Test
+    void indexedAndNonStringKeyedContextValuesArePartOfTheKey() {
+        Resource resource = new Resource("doc-1", "document", policy(null));
+        Principal indexed = new Principal("user-1", List.of(), policy("context.items[0] == 'a'"));
+        Principal keyed = new Principal("user-2", List.of(), policy("context.levels[1] == 3"));
+
+        assertTrue(authZen.authorize(indexed, resource, "read", Map.of("items", List.of("a", "b"))).isAllowed());
+        assertFalse(authZen.authorize(indexed, resource, "read", Map.of("items", List.of("b", "a"))).isAllowed());
+        assertTrue(authZen.authorize(keyed, resource, "read", Map.of("levels", Map.of(1, 3))).isAllowed());
+        assertFalse(authZen.authorize(keyed, resource, "read", Map.of("levels", Map.of(1, 4))).isAllowed());
+        assertTrue(authZen.authorize(keyed, resource, "read", Map.of("levels", Map.of(1, 3, 2, 0))).isAllowed());
+    }
+
+    @Test
+    void batchesGoThroughTheCacheButAllowedActionsDoNot() {
+        Policy policy = policy(null);
+        Principal principal = new Principal("user-1", List.of(), policy);
+        Resource first = new Resource("doc-1", "document", policy);
+        Resource second = new Resource("doc-2", "document", policy);
+
+        Decision cached = authZen.authorize(principal, first, "read", null);
+        List<Decision> decisions = authZen.authorizeAll(principal, List.of(first, second), "read", null);
+
+        assertSame(cached, decisions.get(0));
+        assertEquals(1, cache.getCacheStats().getHitCount());
+        assertEquals(2, cache.getCacheStats().getSize());
+
+        assertEquals(List.of("read"), authZen.allowedActions(principal, first, ActionVocabulary.of("read", "write"),
+                null).getActions());
+        assertEquals(1, cache.getCacheStats().getHitCount());
+        assertEquals(2, cache.getCacheStats().getSize());
+    }
+
+    @Test
+    void decisionsReadingAttributesAreCachedOnlyForVersionedEntities() {
+        Policy conditional = policy("principal.department != 'sales'");
+
+        Principal principal = new Principal("user-1", List.of(), conditional);
+        Resource resource = new Resource("doc-1", "document", policy(null));
+        authZen.authorize(principal, resource, "read");
+        authZen.authorize(principal, resource, "read");
+        assertEquals(0, cache.getCacheStats().getSize());
+
+        Principal versioned = new VersionedPrincipal("user-1", conditional, 1);
+        Decision first = authZen.authorize(versioned, resource, "read");
+        assertSame(first, authZen.authorize(versioned, resource, "read"));
+        assertNotSame(first, authZen.authorize(new VersionedPrincipal("user-1", conditional, 2), resource, "read"));
+    }
+
+    @Test
+    void nonDeterministicDecisionsAreNotCached() {
+        Principal principal = new Principal("user-1", List.of(), policy("new('java.util.Date') != null"));
+        Resource resource = new VersionedResource("doc-1", policy(null), 1);
+
+        authZen.authorize(principal, resource, "read");
+
+        assertEquals(0, cache.getCacheStats().getSize());
+    }
+
+    @Test
+    void invalidationDropsMatchingEntries() {
+        Role reader = new Role("reader", "Reader", policy(null), Map.of());
+        Principal principal = new Principal("user-1", List.of(reader), null);
+        Resource doc1 = new Resource("doc-1", "document", policy(null));
+        Resource doc2 = new Resource("doc-2", "document", policy(null));
+        authZen.authorize(principal, doc1, "read");
+        authZen.authorize(principal, doc2, "read");
+        authZen.authorize(new Principal("user-2", List.of(), policy(null)), doc1, "read");
+
+        cache.invalidateResource("doc-2");
+        assertEquals(2, cache.getCacheStats().getSize());
+        cache.invalidateRole("reader");
+        assertEquals(1, cache.getCacheStats().getSize());
+        cache.invalidatePrincipal("user-2");
+        assertEquals(0, cache.getCacheStats().getSize());
+    }
+}
@@ -0,0 +1,137 @@
+package org.authzen;
+
+import org.junit.jupiter.api.Test;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class DecisionDiagramTest {
+
+    private final PolicyCompiler compiler = new PolicyCompiler();
+    private final AuthorizationEngine engine = new AuthorizationEngine(compiler);
+
+    @Test
+    void diagramReachesSameDecisionAsFullEvaluation() {
+        RandomPolicies random = new RandomPolicies(31);
+        for (int i = 0; i < 2_000; i++) {
+            Principal principal = random.principal(i % 4, 1 + i % 6);
+            Resource resource = random.resource(1 + i % 5);
+            String action = random.action();
+            Map<String, Object> context = random.context();
+
+            Decision full = engine.evaluate(principal, resource, action, context, EvaluationMode.FULL);
+            Decision diagram = engine.evaluate(principal, resource, action, context, EvaluationMode.DIAGRAM);
+
+            assertEquals(full.isAllowed(), diagram.isAllowed());
+            assertEquals(full.getReason(), diagram.getReason());
+        }
+    }
+
+    @Test
+    void statementsShareTheirPredicates() {
+        Statement deny = Statement.builder()
+                .effect(Effect.DENY)
+                .principals(List.of("role-guest"))
+                .actions(List.of("document:*"))
+                .resources(List.of("*"))
+                .build();
+        Statement allow = Statement.builder()
+                .effect(Effect.ALLOW)
+                .principals(List.of("role-*"))
+                .actions(List.of("document:*"))
+                .resources(List.of("*"))
+                .condition("context.level > 2")
+                .build();
+        Statement allowMore = Statement.builder()
+                .effect(Effect.ALLOW)
+                .principals(List.of("role-*"))
+                .actions(List.of("document:read"))
+                .resources(List.of("*"))
+                .condition("context.level > 2")
+                .build();
+        CompiledPolicy resourcePolicy = compiler.compile(Policy.builder()
+                .statements(List.of(deny, allow, allowMore))
+                .build());
+
+        DecisionDiagram diagram = DecisionDiagram.compile(resourcePolicy, false);
+
+        // two action, two principal, one resource and two condition predicates
+        assertEquals(7, diagram.getPredicateCount());
+        assertTrue(diagram.getNodeCount() <= diagram.getPredicateCount() * 2);
+    }
+
+    @Test
+    void largePoliciesOfLiteralStatementsStayWithinTheLimit() {
+        List<Statement> statements = new ArrayList<>();
+        for (int i = 0; i < 1_000; i++) {
+            statements.add(Statement.builder()
+                    .effect(i % 10 == 0 ? Effect.DENY : Effect.ALLOW)
+                    .principals(List.of("user-" + i))
+                    .actions(List.of("document:read"))
+                    .resources(List.of("doc-" + i))
+                    .build());
+        }
+
+        DecisionDiagram diagram = DecisionDiagram.compile(
+                compiler.compile(Policy.builder().statements(statements).build()), false);
+
+        assertNotSame(DecisionDiagram.TOO_LARGE, diagram);
+        assertTrue(diagram.getNodeCount() < 5 * statements.size());
+    }
+
+    @Test
+    void diagramsAreCompiledOncePerPolicy() {
+        Statement allow = Statement.builder()
+                .effect(Effect.ALLOW)
+                .principals(List.of("user-*"))
+                .actions(List.of("document:read"))
+                .resources(List.of("doc-*"))
+                .build();
+        Policy policy = Policy.builder().statements(List.of(allow)).build();
+        Principal principal = new Principal("user-1", List.of(), policy);
+        Principal other = new Principal("user-2", List.of(), policy);
+
+        assertSame(Decision.ALLOWED, engine.evaluate(principal, new Resource("doc-1", "document", policy), "read",
+                null, EvaluationMode.DIAGRAM));
+        assertSame(Decision.NO_MATCHING_ALLOW, engine.evaluate(principal, new Resource("file-1", "document", policy),
+                "read", null, EvaluationMode.DIAGRAM));
+        assertSame(Decision.ALLOWED, engine.evaluate(other, new Resource("doc-2", "document", policy), "read",
+                null, EvaluationMode.DIAGRAM));
+
+        CompiledPolicy resourcePolicy = compiler.compile(policy);
+        assertSame(resourcePolicy.getDiagram(false), resourcePolicy.getDiagram(false));
+        assertNotSame(resourcePolicy.getDiagram(false), resourcePolicy.getDiagram(true));
+    }
+
+    @Test
+    void conditionsAreOnlyEvaluatedOnceTheirStatementMatches() {
+        Statement documents = Statement.builder()
+                .effect(Effect.ALLOW)
+                .principals(List.of("*"))
+                .actions(List.of("document:read"))
+                .resources(List.of("*"))
+                .condition("context.level > 'high'")
+                .build();
+        Statement folders = Statement.builder()
+                .effect(Effect.ALLOW)
+                .principals(List.of("*"))
+                .actions(List.of("folder:read"))
+                .resources(List.of("*"))
+                .condition("context.level > 'high'")
+                .build();
+        Policy policy = Policy.builder().statements(List.of(documents, folders)).build();
+        Principal principal = new Principal("user-1", List.of(), Policy.builder().statements(List.of()).build());
+        CompiledCondition condition = compiler.compile(policy).getStatements().get(0).getCondition();
+        Map<String, Object> context = Map.of("level", 5);
+
+        assertSame(Decision.NO_MATCHING_ALLOW, engine.evaluate(principal, new Resource("file-1", "file", policy),
+                "read", context, EvaluationMode.DIAGRAM));
+        assertEquals(0, condition.getErrorCount());
+
+        assertSame(Decision.NO_MATCHING_ALLOW, engine.evaluate(principal, new Resource("folder-1", "folder", policy),
+                "read", context, EvaluationMode.DIAGRAM));
+        assertEquals(1, condition.getErrorCount());
+    }
+}
@@ -0,0 +1,94 @@
+package org.authzen;
+
+import org.junit.jupiter.api.Test;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class EffectivePolicyCacheTest {
+
+    private final EffectivePolicyCache cache = new EffectivePolicyCache(new PolicyCompiler());
+
+    private static Statement statement(String action) {
+        return Statement.builder().effect(Effect.ALLOW).principals(List.of("*"))
+                .actions(List.of(action)).resources(List.of("*")).build();
+    }
+
+    private static Policy policy(Statement... statements) {
+        return Policy.builder().statements(List.of(statements)).build();
+    }
+
+    @Test
+    void mergesAndDeduplicatesPrincipalAndRoleStatements() {
+        Statement read = statement("document:read");
+        Statement write = statement("document:write");
+        Principal principal = new Principal("user-1",
+                List.of(new Role("editor", "Editor", policy(read, write), Map.of())),
+                policy(read));
+
+        EffectivePrincipalPolicy effective = cache.get(principal);
+
+        assertEquals("user-1", effective.getPrincipalId());
+        assertEquals(List.of(read, write), effective.getStatements().stream().map(CompiledStatement::getStatement).toList());
+        assertEquals(List.of(write), effective.getApplicableStatements("document", "write").stream()
+                .map(CompiledStatement::getStatement).toList());
+    }
+
+    @Test
+    void reusesEffectivePolicyWhileFingerprintIsUnchanged() {
+        Role editor = new Role("editor", "Editor", policy(statement("document:write")), Map.of());
+        EffectivePrincipalPolicy first = cache.get(new Principal("user-1", List.of(editor), null));
+        EffectivePrincipalPolicy second = cache.get(new Principal("user-1", List.of(editor), null));
+
+        assertSame(first, second);
+        assertEquals(1, cache.getCacheStats().getHitCount());
+    }
+
+    @Test
+    void recomputesWhenRolesOrPoliciesChange() {
+        Role editor = new Role("editor", "Editor", policy(statement("document:write")), Map.of());
+        EffectivePrincipalPolicy first = cache.get(new Principal("user-1", List.of(editor), null));
+
+        Role changedEditor = new Role("editor", "Editor", policy(statement("document:delete")), Map.of());
+        EffectivePrincipalPolicy changed = cache.get(new Principal("user-1", List.of(changedEditor), null));
+        EffectivePrincipalPolicy withoutRoles = cache.get(new Principal("user-1", List.of(), null));
+
+        assertNotSame(first, changed);
+        assertEquals(1, changed.getApplicableStatements("document", "delete").size());
+        assertTrue(withoutRoles.getStatements().isEmpty());
+        assertEquals(1, cache.getCacheStats().getSize());
+    }
+
+    @Test
+    void invalidatesByPrincipalRoleOrAll() {
+        Role editor = new Role("editor", "Editor", policy(statement("document:write")), Map.of());
+        Principal alice = new Principal("alice", List.of(editor), null);
+        Principal bob = new Principal("bob", List.of(), policy(statement("document:read")));
+        EffectivePrincipalPolicy aliceEffective = cache.get(alice);
+        EffectivePrincipalPolicy bobEffective = cache.get(bob);
+
+        cache.invalidateRole("editor");
+        assertNotSame(aliceEffective, cache.get(alice));
+        assertSame(bobEffective, cache.get(bob));
+
+        cache.invalidatePrincipal("bob");
+        assertNotSame(bobEffective, cache.get(bob));
+
+        cache.invalidateAll();
+        assertEquals(0, cache.getCacheStats().getSize());
+    }
+
+    @Test
+    void engineSharesEffectivePolicyAcrossRequests() {
+        AuthorizationEngine engine = new AuthorizationEngine(new PolicyCompiler());
+        Principal principal = new Principal("user-1", List.of(), policy(statement("document:read")));
+        Resource resource = new Resource("doc-1", "document", policy(statement("document:read")));
+
+        for (int i = 0; i < 3; i++) {
+            assertTrue(engine.evaluate(principal, resource, "read", null).isAllowed());
+        }
+        assertSame(engine.prepare(principal).getEffectivePolicy(), engine.getEffectivePolicyCache().get(principal));
+        assertEquals(1, engine.getEffectivePolicyCache().getCacheStats().getMissCount());
+    }
+}
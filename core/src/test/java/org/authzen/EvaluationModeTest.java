@@ -0,0 +1,146 @@
+package org.authzen;
+
+import org.junit.jupiter.api.Test;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class EvaluationModeTest {
+
+    private final AuthorizationEngine engine = new AuthorizationEngine();
+
+    @Test
+    void shortCircuitReachesSameDecisionAsFullEvaluation() {
+        RandomPolicies random = new RandomPolicies(42);
+        for (int i = 0; i < 2_000; i++) {
+            Principal principal = random.principal(i % 4, 1 + i % 6);
+            Resource resource = random.resource(1 + i % 5);
+            String action = random.action();
+            Map<String, Object> context = random.context();
+
+            Decision full = engine.evaluate(principal, resource, action, context, EvaluationMode.FULL);
+            Decision shortCircuit = engine.evaluate(principal, resource, action, context, EvaluationMode.SHORT_CIRCUIT);
+            Decision decisionOnly = engine.evaluate(principal, resource, action, context, EvaluationMode.DECISION_ONLY);
+
+            assertEquals(full.isAllowed(), shortCircuit.isAllowed());
+            assertEquals(full.getReason(), shortCircuit.getReason());
+            assertTrue(full.getMatchedStatements().containsAll(shortCircuit.getMatchedStatements()));
+            assertEquals(full.isAllowed(), decisionOnly.isAllowed());
+            assertEquals(full.getReason(), decisionOnly.getReason());
+        }
+    }
+
+    @Test
+    void batchEvaluationMatchesSingleEvaluation() {
+        RandomPolicies random = new RandomPolicies(7);
+        for (int i = 0; i < 200; i++) {
+            Principal principal = random.principal(i % 4, 1 + i % 6);
+            List<Resource> resources = new java.util.ArrayList<>();
+            for (int r = 0; r < 10; r++) {
+                resources.add(random.resource(1 + r % 4));
+            }
+            String action = random.action();
+            Map<String, Object> context = random.context();
+
+            for (EvaluationMode mode : EvaluationMode.values()) {
+                List<Decision> batch = engine.evaluateAll(principal, resources, action, context, mode);
+                for (int r = 0; r < resources.size(); r++) {
+                    assertEquals(engine.evaluate(principal, resources.get(r), action, context, mode), batch.get(r));
+                }
+            }
+        }
+    }
+
+    @Test
+    void allowedActionsMatchPerActionEvaluation() {
+        RandomPolicies random = new RandomPolicies(11);
+        ActionVocabulary vocabulary = ActionVocabulary.of(RandomPolicies.ACTIONS);
+        int allowedCount = 0;
+        for (int i = 0; i < 1_000; i++) {
+            Principal principal = random.principal(i % 4, 1 + i % 6);
+            Resource resource = random.resource(1 + i % 5);
+            Map<String, Object> context = random.context();
+
+            AllowedActions allowed = engine.evaluateActions(principal, resource, vocabulary, context);
+            for (String action : vocabulary.getActions()) {
+                assertEquals(engine.evaluate(principal, resource, action, context).isAllowed(), allowed.contains(action),
+                        action);
+            }
+            allowedCount += allowed.getActions().size();
+        }
+        assertTrue(allowedCount > 0);
+    }
+
+    @Test
+    void parallelEvaluationReachesSameDecisionAsSequentialEvaluation() {
+        ForkJoinPool pool = new ForkJoinPool(4);
+        PolicyCompiler compiler = new PolicyCompiler();
+        AuthorizationEngine parallel = new AuthorizationEngine(compiler, new EffectivePolicyCache(compiler),
+                new ConditionResultCache(), new ParallelEvaluation(pool, 8));
+        RandomPolicies random = new RandomPolicies(13);
+        try {
+            for (int i = 0; i < 300; i++) {
+                Principal principal = random.principal(2 + i % 4, 4 + i % 12);
+                Resource resource = random.resource(4 + i % 20);
+                String action = random.action();
+                Map<String, Object> context = random.context();
+
+                // diagrams are walked sequentially
+                for (EvaluationMode mode : List.of(EvaluationMode.FULL, EvaluationMode.SHORT_CIRCUIT,
+                        EvaluationMode.DECISION_ONLY)) {
+                    assertEquals(engine.evaluate(principal, resource, action, context, mode),
+                            parallel.evaluate(principal, resource, action, context, mode));
+                }
+            }
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    @Test
+    void shortCircuitStopsAtFirstDeny() {
+        Statement deny = Statement.builder()
+                .effect(Effect.DENY)
+                .principals(List.of("user-1"))
+                .actions(List.of("document:*"))
+                .resources(List.of("*"))
+                .build();
+        Statement conditionalAllow = Statement.builder()
+                .effect(Effect.ALLOW)
+                .principals(List.of("user-1"))
+                .actions(List.of("document:*"))
+                .resources(List.of("*"))
+                .condition("context.level > 1")
+                .build();
+        Principal principal = new Principal("user-1", List.of(),
+                Policy.builder().statements(List.of(conditionalAllow, deny)).build());
+        Resource resource = new Resource("doc-1", "document");
+
+        Decision decision = new AuthZen(EvaluationMode.SHORT_CIRCUIT).authorize(principal, resource, "read",
+                Map.of("level", 2));
+
+        assertFalse(decision.isAllowed());
+        assertEquals("Explicit deny", decision.getReason());
+        assertEquals(List.of(deny), decision.getMatchedStatements());
+    }
+
+    @Test
+    void decisionOnlyReturnsSharedConstants() {
+        Statement allow = Statement.builder()
+                .effect(Effect.ALLOW)
+                .principals(List.of("*"))
+                .actions(List.of("document:*"))
+                .resources(List.of("*"))
+                .build();
+        Policy policy = Policy.builder().statements(List.of(allow)).build();
+        Principal principal = new Principal("user-1", List.of(), policy);
+        AuthZen authZen = new AuthZen(EvaluationMode.DECISION_ONLY);
+
+        assertSame(Decision.ALLOWED, authZen.authorize(principal, new Resource("doc-1", "document", policy), "read"));
+        assertSame(Decision.NO_MATCHING_ALLOW, authZen.authorize(principal, new Resource("doc-1", "document"), "read"));
+        assertTrue(new AuthZen().isAllowed(principal, new Resource("doc-1", "document", policy), "read"));
+        assertTrue(Decision.ALLOWED.getMatchedStatements().isEmpty());
+    }
+}
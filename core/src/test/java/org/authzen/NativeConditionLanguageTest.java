@@ -0,0 +1,138 @@
+package org.authzen;
+
+import org.junit.jupiter.api.Test;
+import java.math.BigDecimal;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class NativeConditionLanguageTest {
+
+    private final ConditionEvaluator evaluator = new ConditionEvaluator();
+
+    private static class Employee extends Principal implements Attributed {
+        private final String department;
+
+        Employee(String id, String department, List<Role> roles) {
+            super(id, roles, null);
+            this.department = department;
+        }
+
+        @Override
+        public Object getAttribute(String name) {
+            return name.equals("department") ? department : null;
+        }
+    }
+
+    private boolean evaluate(String condition, Object context) {
+        return evaluate(NativeConditionLanguage.NAME, condition, context);
+    }
+
+    private boolean evaluate(String language, String condition, Object context) {
+        Principal principal = new Employee("user-1", "engineering",
+                List.of(new Role("editor", "Editor", null, Map.of("level", 3))));
+        Resource resource = new Resource("doc-1", "document");
+        CompiledCondition compiled = evaluator.compile(language, condition);
+        assertTrue(compiled.isValid(), () -> String.valueOf(compiled.getError()));
+        return evaluator.evaluate(compiled, new EvaluationContext(principal, resource, "read", context));
+    }
+
+    @Test
+    void readsRequestThroughTypedAccessors() {
+        assertTrue(evaluate("principal.id == 'user-1' && resource.type == \"document\" && action == 'read'", null));
+        assertTrue(evaluate("principal.department == 'engineering'", null));
+        assertTrue(evaluate("'editor' in principal.roles and resource.id startsWith 'doc-'", null));
+        assertFalse(evaluate("principal.missing == 'x'", null));
+        assertTrue(evaluate("principal.missing == null", null));
+    }
+
+    @Test
+    void readsNestedContextValues() {
+        Map<String, Object> context = new HashMap<>();
+        context.put("time", "business_hours");
+        context.put("request", Map.of("ip", "10.0.0.1", "size", 12));
+        context.put("tags", List.of("public", "draft"));
+
+        assertTrue(evaluate("context.time == 'business_hours'", context));
+        assertTrue(evaluate("context.request.ip startsWith '10.' && context.request.size < 100", context));
+        assertTrue(evaluate("context.tags contains 'draft' && 'secret' not in context.tags", context));
+        assertTrue(evaluate("context.missing.deeper == null", context));
+        assertFalse(evaluate("context.time == 'business_hours'", null));
+    }
+
+    @Test
+    void comparesNumbersByValueWithoutOtherConversions() {
+        Map<String, Object> context = Map.of("level", 5, "ratio", new BigDecimal("0.50"), "count", "5");
+
+        assertTrue(evaluate("context.level == 5.0 && context.level > 4 && context.level <= 5", context));
+        assertTrue(evaluate("context.ratio == 0.5 && context.ratio >= -1", context));
+        assertTrue(evaluate("context.level in [1, 3, 5]", context));
+        assertFalse(evaluate("context.count == 5", context));
+        assertFalse(evaluate("context.count > 4", context));
+        assertFalse(evaluate("context.level", context));
+        assertTrue(evaluate("!(context.level < 5) and not context.count == 4 or false", context));
+    }
+
+    @Test
+    void agreesWithJexl() {
+        Map<String, Object> context = Map.of("level", 5, "time", "morning");
+        for (String condition : List.of("action == 'read'", "action != 'read'",
+                "resource.id == 'doc-1' && context.level > 4", "context.time == 'night' || context.level <= 5",
+                "principal.id == 'user-2' || resource.type != 'document'")) {
+            assertEquals(evaluate(JexlConditionLanguage.NAME, condition, context), evaluate(condition, context),
+                    condition);
+        }
+    }
+
+    @Test
+    void actionHasNoProperties() {
+        assertFalse(evaluator.compile(NativeConditionLanguage.NAME, "action.name == 'read'").isValid());
+        assertFalse(evaluator.compile(NativeConditionLanguage.NAME, "action.length > 0").isValid());
+    }
+
+    @Test
+    void reportsDependencies() {
+        ConditionDependencies dependencies = evaluator.compile(NativeConditionLanguage.NAME,
+                "principal.department == 'eng' && context.request.ip != null").getDependencies();
+
+        assertEquals(Set.of("principal", "context"), dependencies.getRoots());
+        assertEquals(Set.of(List.of("principal", "department"), List.of("context", "request", "ip")),
+                dependencies.getPaths());
+        assertTrue(dependencies.isDeterministic());
+        assertFalse(dependencies.isPrincipalOnly());
+    }
+
+    @Test
+    void invalidConditionsAndUnknownLanguagesAreInvalid() {
+        assertFalse(evaluator.compile(NativeConditionLanguage.NAME, "principal.id ==").isValid());
+        assertFalse(evaluator.compile(NativeConditionLanguage.NAME, "'unterminated").isValid());
+        assertFalse(evaluator.compile(NativeConditionLanguage.NAME, "user.id == 'x'").isValid());
+        assertFalse(evaluator.compile(NativeConditionLanguage.NAME, "principal.id == 'a' 'b'").isValid());
+        assertFalse(evaluator.compile("unknown", "true").isValid());
+    }
+
+    @Test
+    void statementSelectsItsConditionLanguage() {
+        Statement statement = StatementFactory.create(builder -> builder
+                .effect(Effect.ALLOW)
+                .principals(List.of("*"))
+                .actions(List.of("document:read"))
+                .resources(List.of("doc-*"))
+                .condition("context.time in ['morning', 'afternoon']")
+                .conditionLanguage(NativeConditionLanguage.NAME));
+        Policy policy = Policy.builder().statements(List.of(statement)).build();
+        AuthorizationEngine engine = new AuthorizationEngine(new PolicyCompiler());
+        Principal principal = new Principal("user-1", List.of(), policy);
+        Resource resource = new Resource("doc-1", "document", policy);
+
+        assertTrue(engine.evaluate(principal, resource, "read", Map.of("time", "morning")).isAllowed());
+        assertFalse(engine.evaluate(principal, resource, "read", Map.of("time", "night")).isAllowed());
+        assertThrows(IllegalArgumentException.class, () -> StatementFactory.create(builder -> builder
+                .effect(Effect.ALLOW)
+                .condition("context.time in")
+                .conditionLanguage(NativeConditionLanguage.NAME)));
+    }
+}
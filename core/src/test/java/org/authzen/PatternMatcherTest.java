@@ -0,0 +1,101 @@
+package org.authzen;
+
+import org.junit.jupiter.api.Test;
+import java.nio.file.FileSystems;
+import java.nio.file.Paths;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PatternMatcherTest {
+
+    private static final List<String> PATTERNS = List.of(
+            "*", "**", "document:read", "document:*", "*:read", "*:*", "doc-*", "*-123", "*doc*",
+            "tenant-42/projects/*", "tenant-42/**", "**/projects/*", "doc-?23", "doc-[0-9]*", "doc-[!a-z]*",
+            "{doc,file}-*", "doc\\*", "", "a/", "a,b", "}", "***", "doc-**", "**-123", "**projects*",
+            "*/projects/**", "*s/p*");
+
+    private static final List<String> VALUES = List.of(
+            "document:read", "document:write", "file:read", "doc-123", "doc-abc", "file-123", "doc*",
+            "tenant-42/projects/p1", "tenant-42/projects/p1/tasks", "tenant-42//projects/p1", "tenant-42/",
+            "a", "a/", "a,b", "}", "", "/", "doc-1\n23", "doc-1/23", "mydocument",
+            "tenant-42/projects/p\n1", "a/projects/p1/x");
+
+    private final PatternMatcher matcher = new PatternMatcher();
+
+    @Test
+    void matchesLikeDefaultFileSystemGlob() {
+        for (String pattern : PATTERNS) {
+            for (String value : VALUES) {
+                boolean expected = FileSystems.getDefault().getPathMatcher("glob:" + pattern)
+                        .matches(Paths.get(value));
+                assertEquals(expected, matcher.matches(pattern, value), pattern + " vs " + value);
+            }
+        }
+    }
+
+    @Test
+    void actionPatternsMatchTypeAndActionLikeTheJoinedValue() {
+        List<String> patterns = List.of("*", "**", "document:read", "document:*", "*:read", "*:*", "doc*",
+                "*ument:re*", "document:{read,write}", "doc?ment:read", "document:read:x", "**:read", ":read",
+                "document:", "doc\\:read", "*:*:*", "document:[rw]*", "*:**");
+        List<String> parts = List.of("document", "read", "write", "", "doc:x", "read:x", "a/b", "a/", "re\nad",
+                "document/");
+        for (String pattern : patterns) {
+            CompiledActionPattern compiled = CompiledActionPattern.compile(pattern);
+            for (String type : parts) {
+                for (String action : parts) {
+                    assertEquals(matcher.matches(pattern, type + ":" + action), compiled.matches(type, action),
+                            pattern + " vs " + type + ":" + action);
+                }
+            }
+        }
+    }
+
+    @Test
+    void actionPatternsAreSplitAtASingleSeparator() {
+        assertEquals(CompiledActionPattern.Form.SPLIT, CompiledActionPattern.compile("document:*").getForm());
+        assertEquals(CompiledActionPattern.Form.SPLIT, CompiledActionPattern.compile("*:read").getForm());
+        assertEquals(CompiledActionPattern.Form.MATCH_ALL, CompiledActionPattern.compile("*").getForm());
+        assertEquals(CompiledActionPattern.Form.JOINED, CompiledActionPattern.compile("doc*").getForm());
+        assertEquals(CompiledActionPattern.Form.JOINED, CompiledActionPattern.compile("a:b:c").getForm());
+        assertEquals(CompiledActionPattern.Form.JOINED, CompiledActionPattern.compile("document:{read,write}").getForm());
+        CompiledActionPattern pattern = CompiledActionPattern.compile("document:*");
+        assertEquals(SymbolTable.lookup("document"), pattern.getTypeSymbol());
+        assertEquals(SymbolTable.UNKNOWN, pattern.getActionSymbol());
+    }
+
+    @Test
+    void simplePatternsAreClassifiedWithoutRegex() {
+        assertEquals(CompiledPattern.Kind.EXACT, matcher.compile("document:read").getKind());
+        assertEquals(CompiledPattern.Kind.PREFIX, matcher.compile("doc-*").getKind());
+        assertEquals(CompiledPattern.Kind.SUFFIX, matcher.compile("*:read").getKind());
+        assertEquals(CompiledPattern.Kind.CONTAINS, matcher.compile("*doc*").getKind());
+        assertEquals(CompiledPattern.Kind.MATCH_ALL, matcher.compile("*").getKind());
+        assertEquals(CompiledPattern.Kind.MATCH_ALL, matcher.compile("**").getKind());
+        assertEquals(CompiledPattern.Kind.CONTAINS, matcher.compile("*:*").getKind());
+        assertEquals(CompiledPattern.Kind.GLOB, matcher.compile("doc-*-v*").getKind());
+        assertEquals(CompiledPattern.Kind.GLOB, matcher.compile("doc-?23").getKind());
+        assertEquals("doc-", matcher.compile("doc-*").getLiteral());
+    }
+
+    @Test
+    void compiledPatternsAreCached() {
+        assertSame(matcher.compile("document:*"), matcher.compile("document:*"));
+    }
+
+    @Test
+    void cacheIsBounded() {
+        PatternMatcher small = new PatternMatcher(2);
+        CompiledPattern first = small.compile("a*");
+        small.compile("b*");
+        small.compile("c*");
+
+        assertNotSame(first, small.compile("a*"));
+    }
+
+    @Test
+    void invalidPatternThrowsPatternSyntaxException() {
+        assertThrows(java.util.regex.PatternSyntaxException.class, () -> matcher.matches("doc-[", "doc-1"));
+    }
+}
@@ -0,0 +1,216 @@
+package org.authzen;
+
+import org.junit.jupiter.api.Test;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PolicyCompilerTest {
+
+    private final PolicyCompiler compiler = new PolicyCompiler();
+
+    private Policy policy(String condition) {
+        return Policy.builder()
+                .statements(List.of(Statement.builder()
+                        .effect(Effect.ALLOW)
+                        .principals(List.of("user-1"))
+                        .actions(List.of("document:read"))
+                        .resources(List.of("doc-*"))
+                        .condition(condition)
+                        .build()))
+                .build();
+    }
+
+    @Test
+    void compiledPolicyIsCachedByValue() {
+        CompiledPolicy first = compiler.compile(policy("context.time == 'business_hours'"));
+        CompiledPolicy second = compiler.compile(policy("context.time == 'business_hours'"));
+
+        assertSame(first, second);
+        assertEquals(1, compiler.getCacheStats().getMissCount());
+    }
+
+    @Test
+    void compiledStatementHoldsMatchersAndCondition() {
+        CompiledStatement statement = compiler.compile(policy("context.time == 'business_hours'"))
+                .getStatements().get(0);
+
+        assertEquals(Effect.ALLOW, statement.getEffect());
+        assertTrue(statement.matchesAction("document:read"));
+        assertFalse(statement.matchesAction("document:write"));
+        assertTrue(statement.matchesResource("doc-123"));
+        assertTrue(statement.getCondition().isValid());
+        assertFalse(statement.getCondition().isEmpty());
+    }
+
+    @Test
+    void invalidConditionCompilesToInvalidCondition() {
+        CompiledStatement statement = compiler.compile(policy("invalid jexl $$$ syntax")).getStatements().get(0);
+
+        assertFalse(statement.getCondition().isValid());
+        assertNotNull(statement.getCondition().getError());
+    }
+
+    @Test
+    void engineDoesNotReparseConditionsAcrossRequests() {
+        AuthorizationEngine engine = new AuthorizationEngine(compiler);
+        Principal principal = new Principal("user-1", List.of(), policy("context.time == 'business_hours'"));
+        Resource resource = new Resource("doc-1", "document", policy(null));
+
+        for (int i = 0; i < 3; i++) {
+            assertTrue(engine.evaluate(principal, resource, "read", Map.of("time", "business_hours")).isAllowed());
+        }
+
+        assertEquals(1, compiler.getConditionEvaluator().getCacheStats().getMissCount());
+    }
+
+    @Test
+    void statementsAreIndexedByLiteralAction() {
+        Statement read = Statement.builder().effect(Effect.ALLOW).actions(List.of("document:read")).build();
+        Statement anyDocument = Statement.builder().effect(Effect.ALLOW).actions(List.of("document:*")).build();
+        Statement write = Statement.builder().effect(Effect.DENY).actions(List.of("document:write", "file:write")).build();
+        Statement noActions = Statement.builder().effect(Effect.ALLOW).build();
+        CompiledPolicy policy = compiler.compile(Policy.builder()
+                .statements(List.of(read, anyDocument, write, noActions))
+                .build());
+
+        assertEquals(List.of(read, anyDocument), statementsOf(policy.getStatementsForAction("document", "read")));
+        assertEquals(List.of(anyDocument, write), statementsOf(policy.getStatementsForAction("document", "write")));
+        assertEquals(List.of(write), statementsOf(policy.getStatementsForAction("file", "write")));
+        assertEquals(List.of(anyDocument), statementsOf(policy.getStatementsForAction("document", "delete")));
+        assertEquals(List.of(), statementsOf(policy.getStatementsForAction("folder", "read")));
+    }
+
+    @Test
+    void statementsWithWildcardTypesAreInEveryBucket() {
+        Statement anyRead = Statement.builder().effect(Effect.ALLOW).actions(List.of("*:read")).build();
+        Statement read = Statement.builder().effect(Effect.ALLOW).actions(List.of("document:read")).build();
+        Statement all = Statement.builder().effect(Effect.ALLOW).actions(List.of("*")).build();
+        Statement prefixed = Statement.builder().effect(Effect.ALLOW).actions(List.of("doc*")).build();
+        CompiledPolicy policy = compiler.compile(Policy.builder()
+                .statements(List.of(anyRead, read, all, prefixed))
+                .build());
+
+        assertEquals(List.of(anyRead, read, all, prefixed),
+                statementsOf(policy.getStatementsForAction("document", "read")));
+        assertEquals(List.of(anyRead, all, prefixed), statementsOf(policy.getStatementsForAction("file", "write")));
+        assertEquals(List.of(anyRead, read, all, prefixed),
+                statementsOf(policy.getStatementsForAction("document:v2", "read")));
+
+        CompiledStatement compiled = policy.getStatements().get(3);
+        assertTrue(compiled.matchesAction("document", "read"));
+        assertFalse(compiled.matchesAction("file", "read"));
+    }
+
+    @Test
+    void candidatesAreFilteredByResourcePrefix() {
+        List<Statement> statements = new java.util.ArrayList<>();
+        for (int tenant = 0; tenant < 10; tenant++) {
+            statements.add(Statement.builder()
+                    .effect(Effect.ALLOW)
+                    .actions(List.of("document:read"))
+                    .resources(List.of("tenant-" + tenant + "/projects/*"))
+                    .build());
+        }
+        Statement anyResource = Statement.builder().effect(Effect.ALLOW).actions(List.of("*")).resources(List.of("*")).build();
+        Statement exact = Statement.builder().effect(Effect.ALLOW).actions(List.of("*")).resources(List.of("tenant-3")).build();
+        statements.add(anyResource);
+        statements.add(exact);
+        CompiledPolicy policy = compiler.compile(Policy.builder().statements(statements).build());
+
+        List<CompiledStatement> candidates = new java.util.ArrayList<>();
+        policy.collectCandidates("document", "read", "tenant-3/projects/p1", candidates);
+
+        assertEquals(List.of(statements.get(3), anyResource, exact), statementsOf(candidates));
+    }
+
+    @Test
+    void principalPatternsMatchPrincipalAndRoleIds() {
+        CompiledStatement statement = compiler.compile(Statement.builder()
+                .effect(Effect.ALLOW)
+                .principals(List.of("user-1", "role-admin", "group-*"))
+                .notPrincipals(List.of("role-banned"))
+                .build());
+        PrincipalIdentity admin = new PrincipalIdentity(
+                new Principal("user-2", List.of(new Role("role-admin", "Admin")), null));
+        PrincipalIdentity group = new PrincipalIdentity(
+                new Principal("user-3", List.of(new Role("group-7", "Group"), new Role("role-banned", "Banned")), null));
+        PrincipalIdentity stranger = new PrincipalIdentity(new Principal("user-4"));
+
+        assertTrue(statement.matchesPrincipal(admin));
+        assertFalse(statement.matchesNotPrincipal(admin));
+        assertTrue(statement.matchesPrincipal(group));
+        assertTrue(statement.matchesNotPrincipal(group));
+        assertFalse(statement.matchesPrincipal(stranger));
+    }
+
+    @Test
+    void largePoliciesSelectCandidatesByPrincipalAndEffect() {
+        Statement deny = Statement.builder().effect(Effect.DENY).principals(List.of("user-2"))
+                .actions(List.of("document:read")).resources(List.of("*")).build();
+        Statement roleAllow = Statement.builder().effect(Effect.ALLOW).principals(List.of("role-admin"))
+                .actions(List.of("document:*")).resources(List.of("doc-*")).build();
+        Statement otherAllow = Statement.builder().effect(Effect.ALLOW).principals(List.of("user-3"))
+                .actions(List.of("document:read")).resources(List.of("*")).build();
+        Statement wildcardAllow = Statement.builder().effect(Effect.ALLOW).principals(List.of("user-*"))
+                .actions(List.of("*:read")).resources(List.of("*")).build();
+        Statement anyoneAllow = Statement.builder().effect(Effect.ALLOW)
+                .actions(List.of("document:read")).resources(List.of("*")).build();
+        List<Statement> statements = List.of(deny, roleAllow, otherAllow, wildcardAllow, anyoneAllow);
+        CompiledPolicy policy = new CompiledPolicy(null,
+                statements.stream().map(compiler::compile).toList(), 0);
+        PrincipalIdentity identity = new PrincipalIdentity(
+                new Principal("user-2", List.of(new Role("role-admin", "Admin")), null));
+
+        List<CompiledStatement> denies = new java.util.ArrayList<>();
+        List<CompiledStatement> allows = new java.util.ArrayList<>();
+        policy.collectCandidates(SymbolTable.lookup("document"), SymbolTable.lookup("read"), true, "doc-1",
+                identity, true, denies, allows);
+        assertEquals(List.of(deny), statementsOf(denies));
+        assertEquals(List.of(roleAllow, wildcardAllow), statementsOf(allows));
+
+        List<CompiledStatement> all = new java.util.ArrayList<>();
+        policy.collectCandidates(SymbolTable.lookup("document"), SymbolTable.lookup("read"), true, "doc-1",
+                identity, false, all, all);
+        assertEquals(List.of(deny, roleAllow, wildcardAllow, anyoneAllow), statementsOf(all));
+    }
+
+    @Test
+    void bitmapSelectionKeepsEveryMatchingStatement() {
+        RandomPolicies random = new RandomPolicies(23);
+        List<CompiledStatement> statements = random.policy(CompiledPolicy.BITMAP_THRESHOLD).getStatements().stream()
+                .map(compiler::compile).toList();
+        CompiledPolicy indexed = new CompiledPolicy(null, statements);
+        CompiledPolicy scanned = new CompiledPolicy(null, statements, Integer.MAX_VALUE);
+        for (int i = 0; i < 300; i++) {
+            PrincipalIdentity identity = new PrincipalIdentity(random.principal(i % 3, 0));
+            Resource resource = random.resource(0);
+            String type = resource.getType();
+            String action = random.action();
+            boolean isIdentityPolicy = i % 2 == 0;
+
+            List<List<CompiledStatement>> selected = new java.util.ArrayList<>();
+            for (CompiledPolicy policy : List.of(indexed, scanned)) {
+                List<CompiledStatement> denies = new java.util.ArrayList<>();
+                List<CompiledStatement> allows = new java.util.ArrayList<>();
+                policy.collectCandidates(SymbolTable.lookup(type), SymbolTable.lookup(action),
+                        CompiledActionPattern.isSplittable(type, action), resource.getId(), identity,
+                        isIdentityPolicy, denies, allows);
+                assertTrue(denies.stream().allMatch(statement -> statement.getEffect() == Effect.DENY));
+                assertTrue(allows.stream().allMatch(statement -> statement.getEffect() == Effect.ALLOW));
+                denies.addAll(allows);
+                selected.add(denies.stream()
+                        .filter(statement -> statement.matchesAction(type, action) &&
+                                             statement.matchesResource(resource.getId()) &&
+                                             statement.appliesTo(identity, isIdentityPolicy))
+                        .toList());
+            }
+            assertEquals(selected.get(1), selected.get(0));
+        }
+    }
+
+    private static List<Statement> statementsOf(List<CompiledStatement> statements) {
+        return statements.stream().map(CompiledStatement::getStatement).toList();
+    }
+}
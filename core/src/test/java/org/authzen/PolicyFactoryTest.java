@@ -50,6 +50,24 @@ class PolicyFactoryTest {
         assertTrue(exception.getMessage().contains("Invalid JEXL condition"));
     }
 
+    @Test
+    void createPolicyWithInvalidPatternThrowsException() {
+        IllegalArgumentException exception = assertThrows(IllegalArgumentException.class, () ->
+                PolicyFactory.create(builder -> builder
+                        .statements(List.of(
+                                Statement.builder()
+                                        .effect(Effect.ALLOW)
+                                        .principals(List.of("user-1"))
+                                        .actions(List.of("document:{read"))
+                                        .resources(List.of("*"))
+                                        .build()
+                        ))
+                )
+        );
+
+        assertTrue(exception.getMessage().contains("Invalid pattern in statement"));
+    }
+
     @Test
     void createPolicyWithEmptyStatements() {
         Policy policy = PolicyFactory.create(builder -> builder
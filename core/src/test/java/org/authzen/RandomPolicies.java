@@ -0,0 +1,85 @@
+package org.authzen;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * Generates random but reproducible principals, resources and requests, used to check that the
+ * optimized evaluation paths reach the same decisions as the full evaluation.
+ */
+class RandomPolicies {
+    static final List<String> ACTIONS = List.of("read", "write", "delete", "share");
+    static final List<String> TYPES = List.of("document", "folder");
+
+    private static final List<String> ACTION_PATTERNS = List.of(
+            "document:read", "document:write", "document:*", "*:read", "*:*", "*", "folder:delete", "folder:share",
+            "doc*:write");
+    private static final List<String> RESOURCE_PATTERNS = List.of(
+            "*", "doc-*", "doc-1", "tenant-1/*", "tenant-1/projects/*", "tenant-2/**", "*-2", "folder-?");
+    private static final List<String> PRINCIPAL_PATTERNS = List.of(
+            "*", "user-1", "user-2", "user-*", "role-admin", "role-*", "role-viewer");
+    private static final List<String> CONDITIONS = List.of(
+            "context.level > 2", "context.level <= 3", "action == 'read'", "context.flag == true", "context.missing.x == 1");
+    private static final List<String> RESOURCE_IDS = List.of(
+            "doc-1", "doc-2", "tenant-1/projects/p1", "tenant-1/x", "tenant-2/a/b", "folder-1", "other");
+
+    private final Random random;
+
+    RandomPolicies(long seed) {
+        this.random = new Random(seed);
+    }
+
+    Policy policy(int statementCount) {
+        List<Statement> statements = new ArrayList<>();
+        for (int i = 0; i < statementCount; i++) {
+            statements.add(statement());
+        }
+        return Policy.builder().statements(statements).build();
+    }
+
+    Statement statement() {
+        return Statement.builder()
+                .effect(random.nextInt(4) == 0 ? Effect.DENY : Effect.ALLOW)
+                .principals(pick(PRINCIPAL_PATTERNS, random.nextInt(3)))
+                .notPrincipals(random.nextInt(5) == 0 ? pick(PRINCIPAL_PATTERNS, 1) : List.of())
+                .actions(pick(ACTION_PATTERNS, 1 + random.nextInt(2)))
+                .resources(pick(RESOURCE_PATTERNS, 1 + random.nextInt(2)))
+                .condition(random.nextInt(3) == 0 ? pick(CONDITIONS, 1).get(0) : null)
+                .build();
+    }
+
+    Principal principal(int roleCount, int statementsPerPolicy) {
+        List<Role> roles = new ArrayList<>();
+        for (int i = 0; i < roleCount; i++) {
+            String roleId = random.nextBoolean() ? "role-admin" : "role-viewer-" + i;
+            roles.add(new Role(roleId, roleId, policy(statementsPerPolicy), null));
+        }
+        return new Principal("user-" + (1 + random.nextInt(3)), roles, policy(statementsPerPolicy));
+    }
+
+    Resource resource(int statementCount) {
+        return new Resource(pick(RESOURCE_IDS, 1).get(0), pick(TYPES, 1).get(0), policy(statementCount));
+    }
+
+    String action() {
+        return pick(ACTIONS, 1).get(0);
+    }
+
+    Map<String, Object> context() {
+        Map<String, Object> context = new HashMap<>();
+        context.put("level", random.nextInt(5));
+        context.put("flag", random.nextBoolean());
+        return context;
+    }
+
+    private List<String> pick(List<String> values, int count) {
+        List<String> picked = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            picked.add(values.get(random.nextInt(values.size())));
+        }
+        return picked;
+    }
+}
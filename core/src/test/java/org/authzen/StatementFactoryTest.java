@@ -51,6 +51,20 @@ class StatementFactoryTest {
         assertTrue(exception.getMessage().contains("Invalid JEXL condition"));
     }
 
+    @Test
+    void createStatementWithInvalidPatternThrowsException() {
+        IllegalArgumentException exception = assertThrows(IllegalArgumentException.class, () ->
+                StatementFactory.create(builder -> builder
+                        .effect(Effect.ALLOW)
+                        .principals(List.of("user-1"))
+                        .actions(List.of("document:read"))
+                        .resources(List.of("doc-["))
+                )
+        );
+
+        assertTrue(exception.getMessage().contains("Invalid pattern: doc-["));
+    }
+
     @Test
     void createStatementWithEmptyCondition() {
         Statement statement = StatementFactory.create(builder -> builder
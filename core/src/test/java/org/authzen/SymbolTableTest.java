@@ -0,0 +1,82 @@
+package org.authzen;
+
+import org.junit.jupiter.api.Test;
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SymbolTableTest {
+
+    @Test
+    void internsEachValueOnce() {
+        SymbolTable.Symbol symbol = SymbolTable.intern("symbol-table-test:read");
+        SymbolTable.Symbol other = SymbolTable.intern("symbol-table-test:write");
+
+        assertSame(symbol, SymbolTable.intern("symbol-table-test:read"));
+        assertEquals(symbol.getId(), SymbolTable.lookup("symbol-table-test:read"));
+        assertNotEquals(symbol.getId(), other.getId());
+    }
+
+    @Test
+    void lookupsDoNotInternValues() {
+        int generation = SymbolTable.generation();
+
+        assertEquals(SymbolTable.UNKNOWN, SymbolTable.lookup("symbol-table-test:never-interned"));
+        assertEquals(SymbolTable.UNKNOWN, SymbolTable.lookup(null));
+        assertEquals(SymbolTable.UNKNOWN, SymbolTable.lookup("symbol-table-test:never-interned"));
+        assertEquals(generation, SymbolTable.generation());
+    }
+
+    @Test
+    void generationChangesWhenASymbolIsAdded() {
+        int generation = SymbolTable.generation();
+
+        SymbolTable.Symbol symbol = SymbolTable.intern("symbol-table-test:" + System.nanoTime());
+
+        assertNotEquals(generation, SymbolTable.generation());
+        assertNotNull(symbol);
+    }
+
+    @Test
+    void symbolsNoPolicyHoldsAreReclaimed() throws InterruptedException {
+        String value = "symbol-table-test:reclaimed-" + System.nanoTime();
+        int id = SymbolTable.intern(value).getId();
+
+        for (int i = 0; i < 50 && SymbolTable.lookup(value) != SymbolTable.UNKNOWN; i++) {
+            System.gc();
+            Thread.sleep(10);
+        }
+
+        assertEquals(SymbolTable.UNKNOWN, SymbolTable.lookup(value));
+        SymbolTable.Symbol reinterned = SymbolTable.intern(value);
+        assertNotEquals(id, reinterned.getId());
+    }
+
+    @Test
+    void actionsDoNotInternTheirNames() {
+        int size = SymbolTable.size();
+        Action action = new Action("symbol-table-test:action-" + System.nanoTime());
+
+        assertEquals(SymbolTable.UNKNOWN, action.getSymbol());
+        assertTrue(SymbolTable.size() <= size);
+
+        SymbolTable.Symbol symbol = SymbolTable.intern(action.getName());
+        assertEquals(symbol.getId(), action.getSymbol());
+    }
+
+    @Test
+    void symbolMapFindsEveryEntry() {
+        Map<Integer, String> entries = new HashMap<>();
+        for (int i = 0; i < 1_000; i++) {
+            entries.put(i * 7, "value-" + i);
+        }
+        SymbolMap<String> map = SymbolMap.of(entries);
+
+        for (int i = 0; i < 7_000; i++) {
+            assertEquals(entries.get(i), map.get(i));
+        }
+        assertNull(map.get(SymbolTable.UNKNOWN));
+        assertNull(SymbolMap.<String>of(Map.of()).get(0));
+    }
+}
@@ -1,6 +1,7 @@
 package org.authzen.examples.webflux.config;
 
 import org.authzen.AuthZen;
+import org.authzen.EvaluationMode;
 import org.authzen.Resource;
 import org.authzen.examples.webflux.domain.ExampleAttributes;
 import org.authzen.examples.webflux.domain.ExampleContextFactory;
@@ -24,7 +25,7 @@ public class AppConfig {
 
     @Bean
     public AuthZen authZen() {
-        return new AuthZen();
+        return new AuthZen(EvaluationMode.DECISION_ONLY);
     }
 
     @Bean
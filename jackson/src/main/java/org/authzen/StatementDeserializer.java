@@ -33,6 +33,9 @@ public class StatementDeserializer extends ValueDeserializer<Statement> {
                 if (node.has("condition")) {
                     builder.condition(node.get("condition").asText());
                 }
+                if (node.has("conditionLanguage")) {
+                    builder.conditionLanguage(node.get("conditionLanguage").asText());
+                }
                 return builder;
             });
         } catch (IllegalArgumentException e) {
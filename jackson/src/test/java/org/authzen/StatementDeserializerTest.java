@@ -39,6 +39,24 @@ class StatementDeserializerTest {
         assertEquals("principal.id == 'user-1'", statement.getCondition());
     }
 
+    @Test
+    void testDeserializeStatementWithConditionLanguage() throws Exception {
+        String json = """
+            {
+                "effect": "ALLOW",
+                "actions": ["document:read"],
+                "resources": ["doc-*"],
+                "condition": "principal.id in ['user-1', 'user-2']",
+                "conditionLanguage": "native"
+            }
+            """;
+
+        Statement statement = mapper.readValue(json, Statement.class);
+
+        assertEquals("principal.id in ['user-1', 'user-2']", statement.getCondition());
+        assertEquals("native", statement.getConditionLanguage());
+    }
+
     @Test
     void testDeserializeMinimalStatement() throws Exception {
         String json = """